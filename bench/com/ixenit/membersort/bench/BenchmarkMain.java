@@ -0,0 +1,60 @@
+/*******************************************************************************
+ * Copyright 2015 Ixenit
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *******************************************************************************/
+package com.ixenit.membersort.bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the GC profiler, so the allocation rate is
+ * reported next to the time, and writes the results as JSON:
+ *
+ * <pre>
+ * java -cp &lt;class path&gt; com.ixenit.membersort.bench.BenchmarkMain [&lt;result file&gt;] [&lt;benchmark regexp&gt;]
+ * </pre>
+ * <p>
+ * The result file defaults to <code>membersort-bench.json</code>, results of
+ * two releases can be compared with any JMH result viewer.
+ * </p>
+ *
+ * @author Benjámin Hajnal <benjamin.hajnal@ixenit.com>
+ *
+ */
+public class BenchmarkMain {
+
+	public static void main(String[] args) throws RunnerException {
+		String result = (args.length > 0) ? args[0] : "membersort-bench.json";
+		String include = (args.length > 1) ? args[1] : SortBenchmark.class.getSimpleName();
+
+		Options options = new OptionsBuilder()
+			.include(include)
+			.addProfiler(GCProfiler.class)
+			.resultFormat(ResultFormatType.JSON)
+			.result(result)
+			.build();
+
+		new Runner(options).run();
+	}
+
+	private BenchmarkMain() {
+		// Only static methods
+	}
+
+}
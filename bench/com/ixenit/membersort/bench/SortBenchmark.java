@@ -0,0 +1,152 @@
+/*******************************************************************************
+ * Copyright 2015 Ixenit
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *******************************************************************************/
+package com.ixenit.membersort.bench;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jdt.core.dom.AbstractTypeDeclaration;
+import org.eclipse.jdt.core.dom.BodyDeclaration;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.text.edits.TextEdit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.ixenit.membersort.engine.MemberComparator;
+import com.ixenit.membersort.engine.MemberSorter;
+import com.ixenit.membersort.engine.OrderChecker;
+import com.ixenit.membersort.engine.RuleSet;
+import com.ixenit.membersort.engine.Violation;
+import com.ixenit.membersort.headless.SourceGenerator;
+
+/**
+ * Measures the phases of sorting a unit separately, for units of 10 to 10k
+ * members generated by {@link SourceGenerator}.
+ * <p>
+ * <code>CompilationUnitSorter</code> needs a unit of a running Java model,
+ * so the edits are measured with the {@link MemberSorter} of the standalone
+ * engine, which does the same moves with an <code>ASTRewrite</code>.
+ * </p>
+ *
+ * @author Benjámin Hajnal <benjamin.hajnal@ixenit.com>
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@Fork(1)
+@Measurement(iterations = 5, time = 1)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+public class SortBenchmark {
+
+	/**
+	 * Only the order check, without computing the edits.
+	 */
+	@Benchmark
+	public List<Violation> check() {
+		return new OrderChecker(_ruleSet).check(_unit);
+	}
+
+	/**
+	 * Sorting the members with keys computed in advance, i.e. the throughput
+	 * of the comparator.
+	 */
+	@Benchmark
+	public List<BodyDeclaration> compare() {
+		List<BodyDeclaration> members = new ArrayList<>(_members);
+
+		Collections.sort(members, _comparator);
+
+		return members;
+	}
+
+	/**
+	 * Computing the edits of a parsed unit, the part done by
+	 * <code>CompilationUnitSorter.sort</code> in the plug-in.
+	 */
+	@Benchmark
+	public TextEdit computeEdits() {
+		return _sorter.computeEdits(_unit, _source);
+	}
+
+	/**
+	 * Classifying every member of the unit.
+	 */
+	@Benchmark
+	public MemberComparator computeKeys() {
+		MemberComparator comparator = new MemberComparator(_ruleSet);
+
+		comparator.computeKeys(_unit);
+
+		return comparator;
+	}
+
+	/**
+	 * Parsing the unit.
+	 */
+	@Benchmark
+	public CompilationUnit parse() {
+		return _sorter.parse(_source);
+	}
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		_ruleSet = RuleSet.compile(RuleSet.DEFAULT_ORDER, true);
+		_sorter = new MemberSorter(_ruleSet);
+
+		_source = SourceGenerator.generate("com.example.generated", "Generated", members, 42);
+		_unit = _sorter.parse(_source);
+
+		@SuppressWarnings("unchecked")
+		List<BodyDeclaration> declarations = ((AbstractTypeDeclaration)_unit.types().get(0)).bodyDeclarations();
+
+		_members = declarations;
+
+		_comparator = new MemberComparator(_ruleSet);
+		_comparator.computeKeys(_unit);
+	}
+
+	/**
+	 * The number of members of the generated class.
+	 */
+	@Param({ "10", "100", "1000", "10000" })
+	public int members;
+
+	private MemberComparator _comparator;
+
+	private List<BodyDeclaration> _members;
+
+	private RuleSet _ruleSet;
+
+	private MemberSorter _sorter;
+
+	private String _source;
+
+	private CompilationUnit _unit;
+
+}
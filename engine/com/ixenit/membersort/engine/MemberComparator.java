@@ -0,0 +1,218 @@
+/*******************************************************************************
+ * Copyright 2015 Ixenit
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *******************************************************************************/
+
+package com.ixenit.membersort.engine;
+
+import java.lang.reflect.Modifier;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.eclipse.jdt.core.dom.ASTNode;
+import org.eclipse.jdt.core.dom.BodyDeclaration;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.jdt.core.dom.EnumDeclaration;
+import org.eclipse.jdt.core.dom.FieldDeclaration;
+import org.eclipse.jdt.core.dom.Initializer;
+import org.eclipse.jdt.core.dom.MethodDeclaration;
+import org.eclipse.jdt.core.dom.TypeDeclaration;
+import org.eclipse.jdt.core.dom.VariableDeclarationFragment;
+
+/**
+ * Compares members by their precomputed {@link SortKey}s.
+ * <p>
+ * The key of every member is computed once by
+ * {@link #computeKeys(CompilationUnit)}, so a comparison itself is only a
+ * field compare. An instance belongs to a single sort call and must not be
+ * reused for another unit, the shared {@link RuleSet} is never modified.
+ * </p>
+ *
+ * @author Benjámin Hajnal <benjamin.hajnal@ixenit.com>
+ *
+ */
+public class MemberComparator implements Comparator<BodyDeclaration> {
+
+	@Override
+	public int compare(BodyDeclaration o1, BodyDeclaration o2) {
+		SortKey key1 = _getKey(o1);
+		SortKey key2 = _getKey(o2);
+
+		// If they have the same modifiers then compare them by name
+		if (key1.rank == key2.rank) {
+			return _orderByName ? key1.name.compareTo(key2.name) : 0;
+		}
+
+		// Compare them by modifiers
+		return (key1.rank < key2.rank) ? -1 : 1;
+	}
+
+	/**
+	 * @param ruleSet
+	 *        the rules to sort with
+	 */
+	public MemberComparator(RuleSet ruleSet) {
+		_ruleSet = ruleSet;
+		_orderByName = ruleSet.isOrderByName();
+	}
+
+	/**
+	 * Classifies every member of the given unit in a single pass. Only the
+	 * member lists are walked, the method bodies are not visited.
+	 *
+	 * @param unit
+	 *        the unit which will be sorted with this comparator
+	 */
+	public void computeKeys(CompilationUnit unit) {
+		for (ASTNode container : MemberLists.collect(unit)) {
+			for (BodyDeclaration member : MemberLists.getMembers(container)) {
+				_getKey(member);
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of members classified so far.
+	 *
+	 * @return the number of members
+	 */
+	public int getMemberCount() {
+		return _keys.size();
+	}
+
+	/**
+	 * Returns the number of members moved by the {@link MemberSorter} which
+	 * sorted with this comparator.
+	 *
+	 * @return the number of moved members
+	 */
+	public int getMovedCount() {
+		return _movedCount;
+	}
+
+	/**
+	 * Returns the kinds of the classified members which matched no rule and
+	 * got the fallback rank, e.g. <code>"protected static MethodDeclaration"</code>.
+	 *
+	 * @return the number of members by kind, empty if every member matched
+	 */
+	public Map<String, Integer> getUnmatched() {
+		return Collections.unmodifiableMap(_unmatched);
+	}
+
+	/**
+	 * Counts members moved with this comparator.
+	 */
+	void addMoved(int count) {
+		_movedCount += count;
+	}
+
+	/**
+	 * Returns the name the given member is ordered by.
+	 *
+	 * @param declaration
+	 *        the member
+	 * @return the name of the member
+	 */
+	String getName(BodyDeclaration declaration) {
+		return _getKey(declaration).name;
+	}
+
+	private void _addUnmatched(BodyDeclaration declaration) {
+
+		// The flags of the JDT modifiers are the same as of the reflection
+		String modifiers = Modifier.toString(declaration.getModifiers() & _MODIFIER_MASK);
+
+		String kind = modifiers.isEmpty() ? declaration.getClass().getSimpleName()
+			: modifiers + " " + declaration.getClass().getSimpleName();
+
+		Integer count = _unmatched.get(kind);
+
+		_unmatched.put(kind, (count == null) ? 1 : count + 1);
+	}
+
+	private SortKey _getKey(BodyDeclaration declaration) {
+		SortKey key = _keys.get(declaration);
+
+		if (key == null) {
+			int rank = _ruleSet.getRank(declaration);
+
+			if (rank == _ruleSet.getFallbackRank()) {
+				_addUnmatched(declaration);
+			}
+
+			key = new SortKey(rank, readName(declaration));
+
+			_keys.put(declaration, key);
+		}
+
+		return key;
+	}
+
+	private static String _readFieldName(FieldDeclaration declaration) {
+		String name = null;
+
+		Object o = declaration.fragments().get(0);
+
+		if (o instanceof VariableDeclarationFragment) {
+			name = ((VariableDeclarationFragment)o).getName().getIdentifier();
+		}
+
+		return name;
+	}
+
+	/**
+	 * Reads the name the given member is ordered by.
+	 */
+	static String readName(BodyDeclaration declaration) {
+		if (declaration instanceof FieldDeclaration) {
+			return _readFieldName((FieldDeclaration)declaration);
+		}
+
+		if (declaration instanceof MethodDeclaration) {
+			return ((MethodDeclaration)declaration).getName().getIdentifier();
+		}
+
+		if (declaration instanceof TypeDeclaration) {
+			return ((TypeDeclaration)declaration).getName().getIdentifier();
+		}
+
+		if (declaration instanceof Initializer) {
+			return "";
+		}
+
+		if (declaration instanceof EnumDeclaration) {
+			return ((EnumDeclaration)declaration).getName().getIdentifier();
+		}
+
+		return "-nodata";
+	}
+
+	// The access and the Java language modifiers
+	private static final int _MODIFIER_MASK = 0xFFF;
+
+	private int _movedCount;
+
+	private final Map<BodyDeclaration, SortKey> _keys = new IdentityHashMap<>();
+
+	private final boolean _orderByName;
+
+	private final RuleSet _ruleSet;
+
+	private final Map<String, Integer> _unmatched = new TreeMap<>();
+
+}
@@ -0,0 +1,307 @@
+/*******************************************************************************
+ * Copyright 2015 Ixenit
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *******************************************************************************/
+package com.ixenit.membersort.engine;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+
+import org.eclipse.jdt.core.JavaCore;
+import org.eclipse.jdt.core.ToolFactory;
+import org.eclipse.jdt.core.compiler.IScanner;
+import org.eclipse.jdt.core.compiler.ITerminalSymbols;
+import org.eclipse.jdt.core.compiler.InvalidInputException;
+import org.eclipse.jdt.core.dom.ASTNode;
+import org.eclipse.jdt.core.dom.ASTVisitor;
+import org.eclipse.jdt.core.dom.AbstractTypeDeclaration;
+import org.eclipse.jdt.core.dom.AnonymousClassDeclaration;
+import org.eclipse.jdt.core.dom.Block;
+import org.eclipse.jdt.core.dom.BodyDeclaration;
+import org.eclipse.jdt.core.dom.ChildListPropertyDescriptor;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.jdt.core.dom.LambdaExpression;
+import org.eclipse.jdt.core.dom.MethodDeclaration;
+
+/**
+ * The nodes of a unit holding a sortable list of members: the unit itself
+ * (its types), every type declaration and every anonymous class.
+ *
+ * @author Benjámin Hajnal <benjamin.hajnal@ixenit.com>
+ *
+ */
+public class MemberLists {
+
+	/**
+	 * The name of the unit, whose members are its top level types.
+	 */
+	public static final String TOP_LEVEL = "(top level)";
+
+	/**
+	 * Returns every node of the given unit holding members, the unit first,
+	 * then the types in source order.
+	 *
+	 * @param unit
+	 *        the unit
+	 * @return the nodes holding members
+	 */
+	public static List<ASTNode> collect(CompilationUnit unit) {
+		final List<ASTNode> containers = new ArrayList<>();
+
+		containers.add(unit);
+
+		unit.accept(new ASTVisitor() {
+
+			@Override
+			public boolean preVisit2(ASTNode node) {
+				if (node instanceof AbstractTypeDeclaration || node instanceof AnonymousClassDeclaration) {
+					containers.add(node);
+				}
+
+				return true;
+			}
+
+		});
+
+		return containers;
+	}
+
+	/**
+	 * Returns the type declarations of the given unit with the given names,
+	 * and the unit itself if {@link #TOP_LEVEL} is among them. Anonymous classes
+	 * have no unique name, they are never returned.
+	 *
+	 * @param unit
+	 *        the unit
+	 * @param names
+	 *        the names of the types, nested types qualified with their
+	 *        enclosing types, like "Outer.Inner"
+	 * @return the matching nodes
+	 */
+	public static List<ASTNode> find(CompilationUnit unit, Collection<String> names) {
+		List<ASTNode> containers = new ArrayList<>();
+
+		for (ASTNode container : collect(unit)) {
+			if (!(container instanceof AnonymousClassDeclaration) && names.contains(getName(container))) {
+				containers.add(container);
+			}
+		}
+
+		return containers;
+	}
+
+	/**
+	 * Returns the members of the given node.
+	 *
+	 * @param container
+	 *        a unit, a type declaration or an anonymous class
+	 * @return the live list of members
+	 */
+	@SuppressWarnings("unchecked")
+	public static List<BodyDeclaration> getMembers(ASTNode container) {
+		return (List<BodyDeclaration>)container.getStructuralProperty(getProperty(container));
+	}
+
+	/**
+	 * Returns the name of the given node: the name of a type qualified with
+	 * its enclosing types, anonymous classes are named "(anonymous)", the
+	 * unit {@link #TOP_LEVEL}.
+	 *
+	 * @param container
+	 *        a unit, a type declaration or an anonymous class
+	 * @return the name of the node
+	 */
+	public static String getName(ASTNode container) {
+		if (container instanceof CompilationUnit) {
+			return TOP_LEVEL;
+		}
+
+		StringBuilder sb = new StringBuilder();
+
+		for (ASTNode parent = container; parent != null; parent = parent.getParent()) {
+			String name;
+
+			if (parent instanceof AbstractTypeDeclaration) {
+				name = ((AbstractTypeDeclaration)parent).getName().getIdentifier();
+			}
+			else if (parent instanceof AnonymousClassDeclaration) {
+				name = "(anonymous)";
+			}
+			else {
+				continue;
+			}
+
+			sb.insert(0, (sb.length() == 0) ? name : name + ".");
+		}
+
+		return sb.toString();
+	}
+
+	/**
+	 * Returns the property holding the members of the given node.
+	 *
+	 * @param container
+	 *        a unit, a type declaration or an anonymous class
+	 * @return the list property of the members
+	 */
+	public static ChildListPropertyDescriptor getProperty(ASTNode container) {
+		if (container instanceof CompilationUnit) {
+			return CompilationUnit.TYPES_PROPERTY;
+		}
+
+		if (container instanceof AnonymousClassDeclaration) {
+			return AnonymousClassDeclaration.BODY_DECLARATIONS_PROPERTY;
+		}
+
+		return ((AbstractTypeDeclaration)container).getBodyDeclarationsProperty();
+	}
+
+	/**
+	 * Tells whether the method bodies of the given unit may declare classes,
+	 * anonymous or local, whose members would be sorted too. A unit parsed
+	 * with method bodies ignored has no nodes for them, nor for the block
+	 * bodies of lambdas, so the tokens of the bodies are scanned instead:
+	 * comments and literals are skipped, and the argument list of an
+	 * instance creation is followed to its closing parenthesis. The scan may
+	 * give false positives, e.g. for an anonymous class already parsed in an
+	 * initializer, and a body which cannot be scanned counts as declaring a
+	 * class.
+	 *
+	 * @param unit
+	 *        the unit parsed with or without method bodies
+	 * @param source
+	 *        the content of the unit
+	 * @return <code>true</code> if a body may declare a class
+	 */
+	public static boolean mayHaveClassesInBodies(CompilationUnit unit, String source) {
+		final IScanner scanner = ToolFactory.createScanner(false, false, false, JavaCore.VERSION_1_8);
+		final boolean[] found = new boolean[1];
+
+		scanner.setSource(source.toCharArray());
+
+		unit.accept(new ASTVisitor() {
+
+			@Override
+			public boolean visit(LambdaExpression node) {
+				if (node.getBody() instanceof Block && !found[0]) {
+					found[0] = _declaresClass(scanner, node.getBody());
+				}
+
+				// The scanned range covers the nested nodes
+				return false;
+			}
+
+			@Override
+			public boolean visit(MethodDeclaration node) {
+				Block body = node.getBody();
+
+				if (body != null && !found[0]) {
+					found[0] = _declaresClass(scanner, body);
+				}
+
+				return false;
+			}
+
+			@Override
+			public boolean preVisit2(ASTNode node) {
+				return !found[0];
+			}
+
+		});
+
+		return found[0];
+	}
+
+	/**
+	 * Tells whether the tokens of the given body have an instance creation
+	 * with a class body, or a local class, interface or enum declaration,
+	 * but not a class literal.
+	 */
+	private static boolean _declaresClass(IScanner scanner, ASTNode body) {
+		scanner.resetTo(body.getStartPosition(), body.getStartPosition() + body.getLength() - 1);
+
+		// By the depth of parentheses: an instance creation is not finished
+		// at the depth, and the group opened at the depth is its argument list
+		BitSet creating = new BitSet();
+		BitSet arguments = new BitSet();
+
+		int depth = 0;
+		int previous = ITerminalSymbols.TokenNameEOF;
+		boolean afterArguments = false;
+
+		try {
+			for (int token; (token = scanner.getNextToken()) != ITerminalSymbols.TokenNameEOF; previous = token) {
+				if (afterArguments && token == ITerminalSymbols.TokenNameLBRACE) {
+					return true;
+				}
+
+				afterArguments = false;
+
+				switch (token) {
+					case ITerminalSymbols.TokenNamenew:
+						creating.set(depth);
+
+						break;
+
+					case ITerminalSymbols.TokenNameLPAREN:
+						arguments.set(depth, creating.get(depth));
+						creating.clear(++depth);
+
+						break;
+
+					case ITerminalSymbols.TokenNameRPAREN:
+						if (depth > 0) {
+							afterArguments = arguments.get(--depth);
+						}
+
+						break;
+
+					// An array creation, or the end of the expression
+					case ITerminalSymbols.TokenNameLBRACKET:
+					case ITerminalSymbols.TokenNameLBRACE:
+					case ITerminalSymbols.TokenNameRBRACE:
+					case ITerminalSymbols.TokenNameSEMICOLON:
+					case ITerminalSymbols.TokenNameCOMMA:
+						creating.clear(depth);
+
+						break;
+
+					case ITerminalSymbols.TokenNameclass:
+					case ITerminalSymbols.TokenNameinterface:
+					case ITerminalSymbols.TokenNameenum:
+						if (previous != ITerminalSymbols.TokenNameDOT) {
+							return true;
+						}
+
+						break;
+
+					default:
+						break;
+				}
+			}
+		}
+		catch (InvalidInputException e) {
+			return true;
+		}
+
+		return false;
+	}
+
+	private MemberLists() {
+		// Only static methods
+	}
+
+}
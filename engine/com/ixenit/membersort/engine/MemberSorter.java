@@ -0,0 +1,520 @@
+/*******************************************************************************
+ * Copyright 2015 Ixenit
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *******************************************************************************/
+package com.ixenit.membersort.engine;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.jdt.core.JavaCore;
+import org.eclipse.jdt.core.compiler.IProblem;
+import org.eclipse.jdt.core.dom.AST;
+import org.eclipse.jdt.core.dom.ASTNode;
+import org.eclipse.jdt.core.dom.ASTParser;
+import org.eclipse.jdt.core.dom.ASTVisitor;
+import org.eclipse.jdt.core.dom.BodyDeclaration;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.jdt.core.dom.rewrite.ASTRewrite;
+import org.eclipse.jdt.core.dom.rewrite.ListRewrite;
+import org.eclipse.jdt.core.formatter.DefaultCodeFormatterConstants;
+import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.Document;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.text.edits.TextEdit;
+
+/**
+ * Sorts the members of Java sources without an Eclipse runtime.
+ * <p>
+ * The sorter needs only the <code>org.eclipse.jdt.core</code> jar and its
+ * dependencies on the class path, the rules are given as a {@link RuleSet}
+ * instead of being read from the preference store:
+ * </p>
+ *
+ * <pre>
+ * MemberSorter sorter = new MemberSorter(RuleSet.compile(RuleSet.DEFAULT_ORDER, true));
+ *
+ * String sorted = sorter.sort(source);
+ * </pre>
+ * <p>
+ * Members end up in the same order as with <code>CompilationUnitSorter</code>
+ * in the plug-in: every member is moved together with its comments, the
+ * members of nested and anonymous classes are sorted too. Only the members
+ * which are out of place are moved though, the smallest possible set, so
+ * the edits and the diffs stay small and the rest of the text is kept as
+ * it is. Sources and ASTs with syntax errors are rejected, sorting them
+ * could move the recovered fragments.
+ * </p>
+ * <p>
+ * Without given options the moved members are indented like the first
+ * member of the first type of the sorted source, with tabs or spaces.
+ * </p>
+ * <p>
+ * Instances are thread-safe.
+ * </p>
+ *
+ * @author Benjámin Hajnal <benjamin.hajnal@ixenit.com>
+ *
+ */
+public final class MemberSorter {
+
+	/**
+	 * @param ruleSet
+	 *        the rules to sort with
+	 */
+	public MemberSorter(RuleSet ruleSet) {
+		_ruleSet = ruleSet;
+
+		Map<String, String> options = JavaCore.getOptions();
+
+		JavaCore.setComplianceOptions(JavaCore.VERSION_1_8, options);
+
+		_options = options;
+		_inferIndentation = true;
+	}
+
+	/**
+	 * @param ruleSet
+	 *        the rules to sort with
+	 * @param options
+	 *        the compiler and formatter options, e.g. of the project of the
+	 *        sorted units, used to parse and to indent the moved members
+	 */
+	public MemberSorter(RuleSet ruleSet, Map<String, String> options) {
+		_ruleSet = ruleSet;
+		_options = new HashMap<>(options);
+		_inferIndentation = false;
+	}
+
+	/**
+	 * Checks the order of the members of the given file without changing it.
+	 *
+	 * @param file
+	 *        the Java source file
+	 * @param charset
+	 *        the encoding of the file
+	 * @return the first out of order member of every unsorted type, empty if
+	 *         the file is sorted
+	 * @throws IOException
+	 *         if the file cannot be read
+	 * @throws IllegalArgumentException
+	 *         if the file has syntax errors
+	 */
+	public List<Violation> check(Path file, Charset charset) throws IOException {
+		return check(new String(Files.readAllBytes(file), charset));
+	}
+
+	/**
+	 * Checks the order of the members of the given source. This is cheaper
+	 * than {@link #computeEdits(String)}, no edit is computed.
+	 *
+	 * @param source
+	 *        the content of a compilation unit
+	 * @return the first out of order member of every unsorted type, empty if
+	 *         the source is sorted
+	 * @throws IllegalArgumentException
+	 *         if the source has syntax errors
+	 */
+	public List<Violation> check(String source) {
+		return new OrderChecker(_ruleSet).check(parse(source));
+	}
+
+	/**
+	 * Computes the edits sorting the given unit, which is already parsed.
+	 * The AST is not modified, so it can be reused.
+	 *
+	 * @param unit
+	 *        the unit parsed from the source, without syntax errors
+	 * @param source
+	 *        the content of the unit
+	 * @return the edits or <code>null</code> if the unit is already sorted
+	 * @throws IllegalArgumentException
+	 *         if the unit has syntax errors
+	 */
+	public TextEdit computeEdits(CompilationUnit unit, String source) {
+		// Classify every member once, the sort only compares the keys
+		MemberComparator comparator = new MemberComparator(_ruleSet);
+		comparator.computeKeys(unit);
+
+		return computeEdits(unit, source, comparator);
+	}
+
+	/**
+	 * Computes the edits sorting the given unit with a comparator whose keys
+	 * are already computed. The comparator counts the moved members.
+	 *
+	 * @param unit
+	 *        the unit parsed from the source, without syntax errors
+	 * @param source
+	 *        the content of the unit
+	 * @param comparator
+	 *        the comparator the keys of the unit were computed with
+	 * @return the edits or <code>null</code> if the unit is already sorted
+	 * @throws IllegalArgumentException
+	 *         if the unit has syntax errors
+	 */
+	public TextEdit computeEdits(CompilationUnit unit, String source, MemberComparator comparator) {
+		return _computeEdits(unit, source, MemberLists.collect(unit), comparator);
+	}
+
+	/**
+	 * Computes the edits sorting the members of the given nodes of a unit
+	 * only, e.g. of the types which were changed. The edits do not touch the
+	 * rest of the unit.
+	 *
+	 * @param unit
+	 *        the unit parsed from the source, without syntax errors
+	 * @param source
+	 *        the content of the unit
+	 * @param containers
+	 *        the nodes whose members are sorted (see {@link MemberLists})
+	 * @return the edits or <code>null</code> if the nodes are already sorted
+	 * @throws IllegalArgumentException
+	 *         if the unit has syntax errors
+	 */
+	public TextEdit computeEdits(CompilationUnit unit, String source, Collection<? extends ASTNode> containers) {
+		return _computeEdits(unit, source, containers, new MemberComparator(_ruleSet));
+	}
+
+	/**
+	 * Computes the edits sorting the given source.
+	 *
+	 * @param source
+	 *        the content of a compilation unit
+	 * @return the edits or <code>null</code> if the source is already sorted
+	 * @throws IllegalArgumentException
+	 *         if the source has syntax errors
+	 */
+	public TextEdit computeEdits(String source) {
+		return computeEdits(parse(source), source);
+	}
+
+	/**
+	 * Parses the given source with the options of the sorter.
+	 *
+	 * @param source
+	 *        the content of a compilation unit
+	 * @return the AST of the unit, without bindings
+	 * @throws IllegalArgumentException
+	 *         if the source has syntax errors
+	 */
+	public CompilationUnit parse(String source) {
+		ASTParser parser = ASTParser.newParser(AST.JLS8);
+
+		parser.setKind(ASTParser.K_COMPILATION_UNIT);
+		parser.setCompilerOptions(_options);
+		parser.setSource(source.toCharArray());
+
+		CompilationUnit unit = (CompilationUnit)parser.createAST(null);
+
+		_checkSyntax(unit);
+
+		return unit;
+	}
+
+	/**
+	 * Sorts the members of the given file in place.
+	 *
+	 * @param file
+	 *        the Java source file
+	 * @param charset
+	 *        the encoding of the file
+	 * @return <code>true</code> if the file was changed
+	 * @throws IOException
+	 *         if the file cannot be read or written
+	 * @throws IllegalArgumentException
+	 *         if the file has syntax errors
+	 */
+	public boolean sort(Path file, Charset charset) throws IOException {
+		String source = new String(Files.readAllBytes(file), charset);
+
+		String sorted = sort(source);
+
+		if (sorted == source) {
+			return false;
+		}
+
+		Files.write(file, sorted.getBytes(charset));
+
+		return true;
+	}
+
+	/**
+	 * Sorts the members of the given source.
+	 *
+	 * @param source
+	 *        the content of a compilation unit
+	 * @return the sorted source, the same instance if it is already sorted
+	 * @throws IllegalArgumentException
+	 *         if the source has syntax errors
+	 */
+	public String sort(String source) {
+		TextEdit edits = computeEdits(source);
+
+		if (edits == null) {
+			return source;
+		}
+
+		IDocument document = new Document(source);
+
+		try {
+			edits.apply(document, TextEdit.NONE);
+		}
+		catch (BadLocationException e) {
+
+			// The edits were computed from the same text
+			throw new IllegalStateException(e);
+		}
+
+		return document.get();
+	}
+
+	/**
+	 * Rejects a unit with syntax errors or with malformed or recovered
+	 * nodes. Other errors, e.g. of a reconciled AST with bindings, do not
+	 * prevent sorting.
+	 */
+	private static void _checkSyntax(CompilationUnit unit) {
+		for (IProblem problem : unit.getProblems()) {
+			if (problem.isError() && (problem.getID() & IProblem.Syntax) != 0) {
+				throw new IllegalArgumentException(
+					"Syntax error on line " + problem.getSourceLineNumber() + ": " + problem.getMessage());
+			}
+		}
+
+		final ASTNode[] broken = new ASTNode[1];
+
+		unit.accept(new ASTVisitor() {
+
+			@Override
+			public boolean preVisit2(ASTNode node) {
+				if (broken[0] == null && (node.getFlags() & (ASTNode.MALFORMED | ASTNode.RECOVERED)) != 0) {
+					broken[0] = node;
+				}
+
+				return broken[0] == null;
+			}
+
+		});
+
+		if (broken[0] != null) {
+			throw new IllegalArgumentException(
+				"Syntax error on line " + unit.getLineNumber(broken[0].getStartPosition()));
+		}
+	}
+
+	private TextEdit _computeEdits(
+		CompilationUnit unit, String source, Collection<? extends ASTNode> containers, MemberComparator comparator) {
+
+		// The AST may come from an editor, with half typed code
+		_checkSyntax(unit);
+
+		ASTRewrite rewrite = ASTRewrite.create(unit.getAST());
+
+		boolean changed = false;
+
+		for (ASTNode container : containers) {
+			changed |= _sort(container, comparator, rewrite);
+		}
+
+		if (!changed) {
+			return null;
+		}
+
+		return rewrite.rewriteAST(new Document(source), _inferIndentation ? _getOptions(unit, source) : _options);
+	}
+
+	/**
+	 * Finds a longest strictly increasing subsequence of the given distinct
+	 * values in O(n log n).
+	 *
+	 * @return whether each value is part of the subsequence
+	 */
+	private static boolean[] _getLongestIncreasingSubsequence(int[] values) {
+
+		// The index of the last value of the best subsequence of each length
+		int[] tails = new int[values.length];
+
+		// The index of the value preceding each value in its subsequence
+		int[] predecessors = new int[values.length];
+
+		int length = 0;
+
+		for (int i = 0; i < values.length; i++) {
+			int low = 0;
+			int high = length;
+
+			while (low < high) {
+				int middle = (low + high) >>> 1;
+
+				if (values[tails[middle]] < values[i]) {
+					low = middle + 1;
+				}
+				else {
+					high = middle;
+				}
+			}
+
+			predecessors[i] = (low > 0) ? tails[low - 1] : -1;
+			tails[low] = i;
+
+			if (low == length) {
+				length++;
+			}
+		}
+
+		boolean[] result = new boolean[values.length];
+
+		for (int i = (length > 0) ? tails[length - 1] : -1; i >= 0; i = predecessors[i]) {
+			result[i] = true;
+		}
+
+		return result;
+	}
+
+	/**
+	 * Returns the options with the indentation of the first member of the
+	 * first top level type which starts its line, the default options if
+	 * there is none or it is indented with tabs.
+	 */
+	private Map<String, String> _getOptions(CompilationUnit unit, String source) {
+		for (Object type : unit.types()) {
+			for (BodyDeclaration member : MemberLists.getMembers((ASTNode)type)) {
+				int start = member.getStartPosition();
+				int lineStart = start;
+
+				while (lineStart > 0 && " \t".indexOf(source.charAt(lineStart - 1)) >= 0) {
+					lineStart--;
+				}
+
+				// The member does not start its line
+				if (lineStart > 0 && "\r\n".indexOf(source.charAt(lineStart - 1)) < 0) {
+					continue;
+				}
+
+				String indentation = source.substring(lineStart, start);
+
+				if (indentation.isEmpty()) {
+					continue;
+				}
+
+				if (indentation.indexOf('\t') >= 0) {
+					return _options;
+				}
+
+				Map<String, String> options = new HashMap<>(_options);
+
+				String size = Integer.toString(indentation.length());
+
+				options.put(DefaultCodeFormatterConstants.FORMATTER_TAB_CHAR, JavaCore.SPACE);
+				options.put(DefaultCodeFormatterConstants.FORMATTER_TAB_SIZE, size);
+				options.put(DefaultCodeFormatterConstants.FORMATTER_INDENTATION_SIZE, size);
+
+				return options;
+			}
+		}
+
+		return _options;
+	}
+
+	/**
+	 * Moves the fewest members possible: the longest run of members which
+	 * are already in rank order (not necessarily adjacent) stays in place,
+	 * only the rest is moved next to its new neighbour. The text of the
+	 * members which stay is not touched at all.
+	 *
+	 * @return <code>true</code> if the list was not sorted
+	 */
+	private boolean _sort(ASTNode container, MemberComparator comparator, ASTRewrite rewrite) {
+		List<BodyDeclaration> members = MemberLists.getMembers(container);
+
+		int size = members.size();
+
+		List<BodyDeclaration> sorted = new ArrayList<>(members);
+
+		// Stable, members with the same key keep their order
+		Collections.sort(sorted, comparator);
+
+		Map<BodyDeclaration, Integer> targets = new IdentityHashMap<>(size * 2);
+
+		for (int i = 0; i < size; i++) {
+			targets.put(sorted.get(i), i);
+		}
+
+		// The target position of each member, and the current position of
+		// the member belonging to each target position
+		int[] ranks = new int[size];
+		int[] positions = new int[size];
+
+		for (int i = 0; i < size; i++) {
+			ranks[i] = targets.get(members.get(i));
+			positions[ranks[i]] = i;
+		}
+
+		boolean[] staying = _getLongestIncreasingSubsequence(ranks);
+
+		ListRewrite listRewrite = null;
+
+		// The node the next member is inserted after: a member which stays,
+		// or the placeholder of a member moved before
+		ASTNode previous = null;
+
+		for (int i = 0; i < size; i++) {
+			BodyDeclaration member = sorted.get(i);
+
+			if (staying[positions[i]]) {
+				previous = member;
+
+				continue;
+			}
+
+			if (listRewrite == null) {
+				listRewrite = rewrite.getListRewrite(container, MemberLists.getProperty(container));
+			}
+
+			ASTNode placeholder = rewrite.createMoveTarget(member);
+
+			listRewrite.remove(member, null);
+
+			if (previous == null) {
+				listRewrite.insertFirst(placeholder, null);
+			}
+			else {
+				listRewrite.insertAfter(placeholder, previous, null);
+			}
+
+			previous = placeholder;
+
+			comparator.addMoved(1);
+		}
+
+		return listRewrite != null;
+	}
+
+	private final boolean _inferIndentation;
+
+	private final Map<String, String> _options;
+
+	private final RuleSet _ruleSet;
+
+}
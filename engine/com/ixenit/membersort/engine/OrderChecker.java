@@ -0,0 +1,113 @@
+/*******************************************************************************
+ * Copyright 2015 Ixenit
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *******************************************************************************/
+package com.ixenit.membersort.engine;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.eclipse.jdt.core.dom.ASTNode;
+import org.eclipse.jdt.core.dom.BodyDeclaration;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.jdt.core.dom.Initializer;
+
+/**
+ * Tells whether the members of a unit are already sorted, without computing
+ * any edit.
+ * <p>
+ * A list of members is sorted exactly if no member is ranked before the
+ * member preceding it, so every list is checked with a single pass which
+ * compares the neighbours. The first out of order member of every list is
+ * reported.
+ * </p>
+ *
+ * @author Benjámin Hajnal <benjamin.hajnal@ixenit.com>
+ *
+ */
+public final class OrderChecker {
+
+	/**
+	 * @param ruleSet
+	 *        the rules to check with
+	 */
+	public OrderChecker(RuleSet ruleSet) {
+		_ruleSet = ruleSet;
+	}
+
+	/**
+	 * Checks the order of the members of the given unit.
+	 *
+	 * @param unit
+	 *        the parsed unit, bindings are not needed
+	 * @return the first out of order member of every unsorted type, empty if
+	 *         the unit is sorted
+	 */
+	public List<Violation> check(CompilationUnit unit) {
+		return check(unit, MemberLists.collect(unit));
+	}
+
+	/**
+	 * Checks the order of the members of the given nodes of a unit only.
+	 *
+	 * @param unit
+	 *        the parsed unit, bindings are not needed
+	 * @param containers
+	 *        the nodes whose members are checked (see {@link MemberLists})
+	 * @return the first out of order member of every unsorted node, empty if
+	 *         they are sorted
+	 */
+	public List<Violation> check(CompilationUnit unit, Collection<? extends ASTNode> containers) {
+		MemberComparator comparator = new MemberComparator(_ruleSet);
+
+		List<Violation> violations = new ArrayList<>();
+
+		for (ASTNode container : containers) {
+			_check(unit, container, comparator, violations);
+		}
+
+		return violations;
+	}
+
+	private static String _describe(BodyDeclaration declaration, MemberComparator comparator) {
+		if (declaration instanceof Initializer) {
+			return "initializer";
+		}
+
+		return comparator.getName(declaration);
+	}
+
+	private void _check(
+		CompilationUnit unit, ASTNode container, MemberComparator comparator, List<Violation> violations) {
+
+		List<BodyDeclaration> members = MemberLists.getMembers(container);
+
+		for (int i = 1; i < members.size(); i++) {
+			BodyDeclaration previous = members.get(i - 1);
+			BodyDeclaration member = members.get(i);
+
+			if (comparator.compare(previous, member) > 0) {
+				violations.add(new Violation(
+					MemberLists.getName(container), _describe(member, comparator), _describe(previous, comparator),
+					unit.getLineNumber(member.getStartPosition())));
+
+				return;
+			}
+		}
+	}
+
+	private final RuleSet _ruleSet;
+
+}
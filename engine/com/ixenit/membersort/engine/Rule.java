@@ -0,0 +1,349 @@
+/*******************************************************************************
+ * Copyright 2015 Ixenit
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *******************************************************************************/
+package com.ixenit.membersort.engine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import org.eclipse.jdt.core.dom.Annotation;
+import org.eclipse.jdt.core.dom.BodyDeclaration;
+
+/**
+ * A single parsed ordering rule.
+ * <p>
+ * A rule has the words <code>[visibility] [modifiers] [@annotations] type
+ * [/name pattern/]</code>, e.g. <code>"private static final variable"</code>,
+ * <code>"* static final variable"</code>, <code>"@Test method"</code> or
+ * <code>"public method /^(get|is)[A-Z]/"</code>:
+ * </p>
+ * <ul>
+ * <li>A rule without visibility means package visibility, unless it is a
+ * pattern, i.e. it has <code>*</code>, an annotation or a name pattern, then
+ * it matches any visibility.</li>
+ * <li>Without <code>*</code> a member matches only with exactly the given
+ * modifiers. The <code>*</code> word matches any modifiers besides the given
+ * ones.</li>
+ * <li>An annotation matches by its simple or qualified name, every given
+ * annotation has to be present.</li>
+ * <li>The name pattern is a regular expression, it has to be found in the
+ * name of the member.</li>
+ * </ul>
+ *
+ * @author Benjámin Hajnal <benjamin.hajnal@ixenit.com>
+ *
+ */
+public final class Rule {
+
+	/**
+	 * The word matching any further modifiers, and any visibility if none
+	 * is given.
+	 */
+	public static final String ANY = "*";
+
+	/**
+	 * The prefix of an annotation word.
+	 */
+	public static final String ANNOTATION_PREFIX = "@";
+
+	/**
+	 * The delimiter of the name pattern.
+	 */
+	public static final String PATTERN_DELIMITER = "/";
+
+	/**
+	 * Parses the given rule.
+	 *
+	 * @param rule
+	 *        the text of the rule
+	 * @return the rule or <code>null</code> if it is not a valid rule
+	 */
+	public static Rule parse(String rule) {
+		String text = rule.trim();
+
+		Pattern namePattern = null;
+
+		// The pattern may contain the word separator, it is cut off first
+		int patternStart = text.indexOf(_WORD_SEPARATOR_PATTERN_START);
+
+		if (patternStart >= 0 || text.startsWith(PATTERN_DELIMITER)) {
+			patternStart = (patternStart >= 0) ? patternStart + 1 : 0;
+
+			if (!text.endsWith(PATTERN_DELIMITER) || text.length() - patternStart < 2) {
+				return null;
+			}
+
+			try {
+				namePattern = Pattern.compile(text.substring(patternStart + 1, text.length() - 1));
+			}
+			catch (PatternSyntaxException e) {
+				return null;
+			}
+
+			text = text.substring(0, patternStart);
+		}
+
+		int type = -1;
+		int visibility = -1;
+		int modifiers = 0;
+		boolean anyModifiers = false;
+
+		List<String> annotations = new ArrayList<>();
+
+		for (String word : text.split(RuleSet.WORD_SEPARATOR)) {
+			if (word.isEmpty()) {
+				continue;
+			}
+
+			int index;
+
+			if (word.equals(ANY)) {
+				anyModifiers = true;
+			}
+			else if (word.startsWith(ANNOTATION_PREFIX) && word.length() > 1) {
+				annotations.add(word.substring(1));
+			}
+			else if ((index = _indexOf(RuleSet.TYPES, word)) >= 0) {
+				if (type >= 0) {
+					return null;
+				}
+
+				type = index;
+			}
+			else if ((index = _indexOf(RuleSet.VISIBILITIES, word)) >= 0) {
+				visibility = index;
+			}
+			else if ((index = _indexOf(RuleSet.MODIFIERS, word)) >= 0) {
+				modifiers |= 1 << index;
+			}
+			else {
+				return null;
+			}
+		}
+
+		if (type < 0) {
+			return null;
+		}
+
+		// Only a pattern leaves the visibility open
+		if (visibility < 0 && !anyModifiers && annotations.isEmpty() && namePattern == null) {
+			visibility = _indexOf(RuleSet.VISIBILITIES, "package");
+		}
+
+		return new Rule(
+			type, visibility, modifiers, anyModifiers, annotations.toArray(new String[annotations.size()]),
+			namePattern);
+	}
+
+	/**
+	 * Returns the simple or qualified names of the annotations a member has
+	 * to have.
+	 *
+	 * @return the names, without the <code>@</code>
+	 */
+	public List<String> getAnnotations() {
+		return Collections.unmodifiableList(Arrays.asList(_annotations));
+	}
+
+	/**
+	 * Returns the modifier words of the rule.
+	 *
+	 * @return the words, in the order of {@link RuleSet#MODIFIERS}
+	 */
+	public List<String> getModifiers() {
+		List<String> words = new ArrayList<>();
+
+		for (int i = 0; i < RuleSet.MODIFIERS.length; i++) {
+			if ((_modifiers & (1 << i)) != 0) {
+				words.add(RuleSet.MODIFIERS[i]);
+			}
+		}
+
+		return words;
+	}
+
+	/**
+	 * Returns the regular expression the name of a member has to contain.
+	 *
+	 * @return the expression or <code>null</code> if any name matches
+	 */
+	public String getNamePattern() {
+		return (_namePattern == null) ? null : _namePattern.pattern();
+	}
+
+	/**
+	 * Returns the type word of the rule.
+	 *
+	 * @return one of {@link RuleSet#TYPES}
+	 */
+	public String getType() {
+		return RuleSet.TYPES[_type];
+	}
+
+	/**
+	 * Returns the visibility word of the rule.
+	 *
+	 * @return one of {@link RuleSet#VISIBILITIES} or <code>null</code> if any
+	 *         visibility matches
+	 */
+	public String getVisibility() {
+		return (_visibility < 0) ? null : RuleSet.VISIBILITIES[_visibility];
+	}
+
+	/**
+	 * Tells whether members with further modifiers than the given ones
+	 * match.
+	 *
+	 * @return <code>true</code> if the rule has the <code>*</code> word
+	 */
+	public boolean isAnyModifiers() {
+		return _anyModifiers;
+	}
+
+	/**
+	 * Returns the rule in its canonical form, which parses to the same rule.
+	 */
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+
+		if (_visibility >= 0) {
+			sb.append(RuleSet.VISIBILITIES[_visibility]).append(RuleSet.WORD_SEPARATOR);
+		}
+
+		if (_anyModifiers) {
+			sb.append(ANY).append(RuleSet.WORD_SEPARATOR);
+		}
+
+		for (String modifier : getModifiers()) {
+			sb.append(modifier).append(RuleSet.WORD_SEPARATOR);
+		}
+
+		for (String annotation : _annotations) {
+			sb.append(ANNOTATION_PREFIX).append(annotation).append(RuleSet.WORD_SEPARATOR);
+		}
+
+		sb.append(RuleSet.TYPES[_type]);
+
+		if (_namePattern != null) {
+			sb.append(RuleSet.WORD_SEPARATOR).append(PATTERN_DELIMITER).append(_namePattern.pattern()).append(
+				PATTERN_DELIMITER);
+		}
+
+		return sb.toString();
+	}
+
+	/**
+	 * Tells whether the rule has conditions besides the kind of the member,
+	 * which cannot be decided from its code.
+	 */
+	boolean isConditional() {
+		return _annotations.length > 0 || _namePattern != null;
+	}
+
+	/**
+	 * Tells whether the kind of a member matches the rule.
+	 *
+	 * @param type
+	 *        the index of the member type
+	 * @param visibility
+	 *        the index of the visibility
+	 * @param modifiers
+	 *        the bits of the modifiers
+	 */
+	boolean matches(int type, int visibility, int modifiers) {
+		if (type != _type || (_visibility >= 0 && visibility != _visibility)) {
+			return false;
+		}
+
+		return _anyModifiers ? (modifiers & _modifiers) == _modifiers : modifiers == _modifiers;
+	}
+
+	/**
+	 * Tells whether the annotations and the name of the member match the
+	 * conditions of the rule, its kind is already known to match.
+	 */
+	boolean matchesConditions(BodyDeclaration declaration) {
+		for (String annotation : _annotations) {
+			if (!_hasAnnotation(declaration, annotation)) {
+				return false;
+			}
+		}
+
+		if (_namePattern != null) {
+			String name = MemberComparator.readName(declaration);
+
+			return name != null && _namePattern.matcher(name).find();
+		}
+
+		return true;
+	}
+
+	private static boolean _hasAnnotation(BodyDeclaration declaration, String name) {
+		for (Object modifier : declaration.modifiers()) {
+			if (!(modifier instanceof Annotation)) {
+				continue;
+			}
+
+			String typeName = ((Annotation)modifier).getTypeName().getFullyQualifiedName();
+
+			if (typeName.equals(name) || typeName.endsWith("." + name) || name.endsWith("." + typeName)) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	private static int _indexOf(String[] array, String value) {
+		for (int i = 0; i < array.length; i++) {
+			if (array[i].equals(value)) {
+				return i;
+			}
+		}
+
+		return -1;
+	}
+
+	private Rule(
+		int type, int visibility, int modifiers, boolean anyModifiers, String[] annotations, Pattern namePattern) {
+
+		_type = type;
+		_visibility = visibility;
+		_modifiers = modifiers;
+		_anyModifiers = anyModifiers;
+		_annotations = annotations;
+		_namePattern = namePattern;
+	}
+
+	private static final String _WORD_SEPARATOR_PATTERN_START = RuleSet.WORD_SEPARATOR + PATTERN_DELIMITER;
+
+	private final String[] _annotations;
+
+	private final boolean _anyModifiers;
+
+	private final int _modifiers;
+
+	private final Pattern _namePattern;
+
+	private final int _type;
+
+	private final int _visibility;
+
+}
@@ -0,0 +1,360 @@
+/*******************************************************************************
+ * Copyright 2015 Ixenit
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *******************************************************************************/
+package com.ixenit.membersort.engine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.eclipse.jdt.core.dom.BodyDeclaration;
+import org.eclipse.jdt.core.dom.EnumDeclaration;
+import org.eclipse.jdt.core.dom.FieldDeclaration;
+import org.eclipse.jdt.core.dom.Initializer;
+import org.eclipse.jdt.core.dom.MethodDeclaration;
+import org.eclipse.jdt.core.dom.Modifier;
+import org.eclipse.jdt.core.dom.TypeDeclaration;
+
+/**
+ * The compiled form of the ordering rules.
+ * <p>
+ * A member is encoded into a small integer from its type, visibility and
+ * modifiers, and its rank is read from a dense table built once from the
+ * configured order, so wildcard rules cost nothing when sorting, however
+ * many there are. Only the rules with annotations or name patterns which
+ * come before the rank of the table for a kind of member are checked
+ * member by member. Members matching no rule get the same fallback rank,
+ * which places them after every configured rule.
+ * </p>
+ * <p>
+ * Instances are immutable and can be shared between threads. The class
+ * depends only on the JDT DOM, so it can be used without an Eclipse runtime.
+ * </p>
+ *
+ * @author Benjámin Hajnal <benjamin.hajnal@ixenit.com>
+ *
+ */
+public final class RuleSet {
+
+	/**
+	 * The default order of the rules.
+	 */
+	public static final String[] DEFAULT_ORDER = {
+
+			// PUBLIC
+			"public static final variable", "public static variable",
+
+			"public static method", "public constructor", "public method",
+
+			// PACKAGE
+			"package static method", "package constructor", "package method",
+
+			"package static final variable", "package static variable", "package variable", "package final variable",
+
+			// PROTECTED
+			"protected static method", "protected constructor", "protected method",
+
+			"protected static final variable", "protected static variable", "protected variable", "protected final variable",
+
+			// PRIVATE
+			"private static method", "private constructor", "private method",
+
+			"public variable", "public final variable",
+
+			// "private static final log", "private static final instance",
+
+			"private static final variable", "private static variable", "private variable", "private final variable",
+
+			"static init",
+
+			// CLASSES
+
+			"public static class", "public class", "protected static class", "protected class", "private static class", "private class",
+
+			// ENUMS
+			"public enum", "package enum", "protected enum", "private enum" };
+
+	/**
+	 * The modifier words of a rule.
+	 */
+	public static final String[] MODIFIERS = { "static", "final", "abstract", "synchronized", "transient", "volatile" };
+
+	/**
+	 * The member type words of a rule, every rule has exactly one.
+	 */
+	public static final String[] TYPES = { "constructor", "method", "variable", "class", "enum", "init", };
+
+	/**
+	 * The visibility words of a rule, a rule without one means package
+	 * visibility.
+	 */
+	public static final String[] VISIBILITIES = { "public", "private", "protected", "package" };
+
+	/**
+	 * The separator of the words of a rule.
+	 */
+	public static final String WORD_SEPARATOR = " ";
+
+	/**
+	 * Compiles the given rules (see {@link Rule} for their format). Invalid
+	 * rules are ignored.
+	 *
+	 * @param order
+	 *        the rules in their order, e.g. "private static final variable"
+	 * @param orderByName
+	 *        whether members with the same rank are ordered by name
+	 * @return the compiled rules
+	 */
+	public static RuleSet compile(String[] order, boolean orderByName) {
+		Rule[] rules = new Rule[order.length];
+
+		for (int i = 0; i < order.length; i++) {
+			rules[i] = Rule.parse(order[i]);
+		}
+
+		int[] ranks = new int[_TABLE_SIZE];
+
+		Arrays.fill(ranks, order.length);
+
+		int[][] conditionalRanks = new int[_TABLE_SIZE][];
+
+		List<Integer> conditional = new ArrayList<>();
+
+		// Every possible kind of member is decided once: the first rule
+		// matching it by kind alone gives its rank, the rules with
+		// annotations or name patterns before that are checked per member
+		for (int code = 0; code < _TABLE_SIZE; code++) {
+			int type = code >> 8;
+			int visibility = (code >> 6) & 3;
+			int modifiers = code & 63;
+
+			conditional.clear();
+
+			for (int i = 0; i < rules.length; i++) {
+				Rule rule = rules[i];
+
+				if (rule == null || !rule.matches(type, visibility, modifiers)) {
+					continue;
+				}
+
+				if (!rule.isConditional()) {
+					ranks[code] = i;
+
+					break;
+				}
+
+				conditional.add(i);
+			}
+
+			if (!conditional.isEmpty()) {
+				int[] candidates = new int[conditional.size()];
+
+				for (int i = 0; i < candidates.length; i++) {
+					candidates[i] = conditional.get(i);
+				}
+
+				conditionalRanks[code] = candidates;
+			}
+		}
+
+		return new RuleSet(rules, ranks, conditionalRanks, order.length, orderByName);
+	}
+
+	/**
+	 * Returns the rank given to members matching no rule.
+	 *
+	 * @return the fallback rank
+	 */
+	public int getFallbackRank() {
+		return _fallbackRank;
+	}
+
+	/**
+	 * Returns a hash of the compiled rules. Rule sets ordering every member
+	 * the same way have the same fingerprint.
+	 *
+	 * @return the fingerprint of the rules
+	 */
+	public long getFingerprint() {
+		return _fingerprint;
+	}
+
+	/**
+	 * Returns the rank of the given member.
+	 *
+	 * @param declaration
+	 *        the member
+	 * @return the index of the first matching rule or the fallback rank
+	 */
+	public int getRank(BodyDeclaration declaration) {
+		int code = _encode(declaration);
+
+		if (code < 0) {
+			return _fallbackRank;
+		}
+
+		int[] candidates = _conditionalRanks[code];
+
+		if (candidates != null) {
+			for (int rank : candidates) {
+				if (_rules[rank].matchesConditions(declaration)) {
+					return rank;
+				}
+			}
+		}
+
+		return _ranks[code];
+	}
+
+	/**
+	 * Tells whether members with the same rank are ordered by name.
+	 *
+	 * @return <code>true</code> if members are ordered by name
+	 */
+	public boolean isOrderByName() {
+		return _orderByName;
+	}
+
+	private static int _code(int type, int visibility, int modifiers) {
+		return (type << 8) | (visibility << 6) | modifiers;
+	}
+
+	private static int _encode(BodyDeclaration declaration) {
+		int type;
+
+		if (declaration instanceof FieldDeclaration) {
+			type = _TYPE_VARIABLE;
+		}
+		else if (declaration instanceof MethodDeclaration) {
+			type = ((MethodDeclaration)declaration).isConstructor() ? _TYPE_CONSTRUCTOR : _TYPE_METHOD;
+		}
+		else if (declaration instanceof TypeDeclaration) {
+			type = _TYPE_CLASS;
+		}
+		else if (declaration instanceof Initializer) {
+			type = _TYPE_INIT;
+		}
+		else if (declaration instanceof EnumDeclaration) {
+			type = _TYPE_ENUM;
+		}
+		else {
+			return -1;
+		}
+
+		int flags = declaration.getModifiers();
+
+		int visibility;
+
+		if (Modifier.isPublic(flags)) {
+			visibility = _VISIBILITY_PUBLIC;
+		}
+		else if (Modifier.isProtected(flags)) {
+			visibility = _VISIBILITY_PROTECTED;
+		}
+		else if (Modifier.isPrivate(flags)) {
+			visibility = _VISIBILITY_PRIVATE;
+		}
+		else {
+			visibility = _VISIBILITY_PACKAGE;
+		}
+
+		int modifiers = 0;
+
+		for (int i = 0; i < _MODIFIER_FLAGS.length; i++) {
+			if ((flags & _MODIFIER_FLAGS[i]) != 0) {
+				modifiers |= 1 << i;
+			}
+		}
+
+		return _code(type, visibility, modifiers);
+	}
+
+	private static int _indexOf(String[] array, String value) {
+		for (int i = 0; i < array.length; i++) {
+			if (array[i].equals(value)) {
+				return i;
+			}
+		}
+
+		return -1;
+	}
+
+	private RuleSet(Rule[] rules, int[] ranks, int[][] conditionalRanks, int fallbackRank, boolean orderByName) {
+		_rules = rules;
+		_ranks = ranks;
+		_conditionalRanks = conditionalRanks;
+		_fallbackRank = fallbackRank;
+		_orderByName = orderByName;
+
+		long fingerprint = orderByName ? 1 : 0;
+
+		for (int code = 0; code < ranks.length; code++) {
+			fingerprint = fingerprint * 31 + ranks[code];
+
+			if (conditionalRanks[code] == null) {
+				continue;
+			}
+
+			for (int rank : conditionalRanks[code]) {
+				fingerprint = fingerprint * 31 + rank;
+				fingerprint = fingerprint * 31 + rules[rank].toString().hashCode();
+			}
+		}
+
+		_fingerprint = fingerprint;
+	}
+
+	// Same order as MODIFIERS
+	private static final int[] _MODIFIER_FLAGS = {
+		Modifier.STATIC, Modifier.FINAL, Modifier.ABSTRACT, Modifier.SYNCHRONIZED, Modifier.TRANSIENT,
+		Modifier.VOLATILE };
+
+	private static final int _TABLE_SIZE = TYPES.length << 8;
+
+	private static final int _TYPE_CLASS = _indexOf(TYPES, "class");
+
+	private static final int _TYPE_CONSTRUCTOR = _indexOf(TYPES, "constructor");
+
+	private static final int _TYPE_ENUM = _indexOf(TYPES, "enum");
+
+	private static final int _TYPE_INIT = _indexOf(TYPES, "init");
+
+	private static final int _TYPE_METHOD = _indexOf(TYPES, "method");
+
+	private static final int _TYPE_VARIABLE = _indexOf(TYPES, "variable");
+
+	private static final int _VISIBILITY_PACKAGE = _indexOf(VISIBILITIES, "package");
+
+	private static final int _VISIBILITY_PRIVATE = _indexOf(VISIBILITIES, "private");
+
+	private static final int _VISIBILITY_PROTECTED = _indexOf(VISIBILITIES, "protected");
+
+	private static final int _VISIBILITY_PUBLIC = _indexOf(VISIBILITIES, "public");
+
+	// The rules with annotations or name patterns to check before the rank
+	// of the table, by code, null if there are none
+	private final int[][] _conditionalRanks;
+
+	private final int _fallbackRank;
+
+	private final long _fingerprint;
+
+	private final boolean _orderByName;
+
+	private final int[] _ranks;
+
+	private final Rule[] _rules;
+
+}
@@ -0,0 +1,84 @@
+/*******************************************************************************
+ * Copyright 2015 Ixenit
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *******************************************************************************/
+package com.ixenit.membersort.engine;
+
+/**
+ * The first member of a type which is out of order: it has to be moved
+ * before the member preceding it.
+ *
+ * @author Benjámin Hajnal <benjamin.hajnal@ixenit.com>
+ *
+ */
+public final class Violation {
+
+	/**
+	 * Returns the line of the out of order member.
+	 *
+	 * @return the line number, starting from 1
+	 */
+	public int getLine() {
+		return _line;
+	}
+
+	/**
+	 * Returns the name of the out of order member.
+	 *
+	 * @return the name of the member
+	 */
+	public String getMember() {
+		return _member;
+	}
+
+	/**
+	 * Returns the name of the member preceding the out of order member.
+	 *
+	 * @return the name of the previous member
+	 */
+	public String getPrevious() {
+		return _previous;
+	}
+
+	/**
+	 * Returns the name of the type containing the members, nested types are
+	 * qualified with their enclosing types.
+	 *
+	 * @return the name of the type
+	 */
+	public String getType() {
+		return _type;
+	}
+
+	@Override
+	public String toString() {
+		return _line + ": " + _type + ": " + _member + " should be before " + _previous;
+	}
+
+	Violation(String type, String member, String previous, int line) {
+		_type = type;
+		_member = member;
+		_previous = previous;
+		_line = line;
+	}
+
+	private final int _line;
+
+	private final String _member;
+
+	private final String _previous;
+
+	private final String _type;
+
+}
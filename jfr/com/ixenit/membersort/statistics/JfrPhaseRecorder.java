@@ -0,0 +1,98 @@
+/*******************************************************************************
+ * Copyright 2015 Ixenit
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *******************************************************************************/
+package com.ixenit.membersort.statistics;
+
+import java.util.Locale;
+
+import jdk.jfr.EventType;
+
+import org.eclipse.jdt.core.ICompilationUnit;
+
+import com.ixenit.membersort.statistics.SortStatistics.Phase;
+
+/**
+ * Records the phases of sorting as {@link SortPhaseEvent}s. Loaded by
+ * {@link PerformanceEvents} only if the JVM has the <code>jdk.jfr</code>
+ * module.
+ *
+ * @author Benjámin Hajnal <benjamin.hajnal@ixenit.com>
+ *
+ */
+final class JfrPhaseRecorder implements PhaseRecorder {
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.ixenit.membersort.statistics.PhaseRecorder#begin(com.ixenit.membersort.statistics.SortStatistics.Phase)
+	 */
+	@Override
+	public void begin(Phase phase) {
+		SortPhaseEvent event = null;
+
+		// Only the events a recording has enabled are kept
+		if (_TYPE.isEnabled()) {
+			event = new SortPhaseEvent();
+
+			event.begin();
+		}
+
+		_events.get()[phase.ordinal()] = event;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.ixenit.membersort.statistics.PhaseRecorder#end(com.ixenit.membersort.statistics.SortStatistics.Phase, org.eclipse.jdt.core.ICompilationUnit, int, int)
+	 */
+	@Override
+	public void end(Phase phase, ICompilationUnit unit, int members, int moved) {
+		SortPhaseEvent[] events = _events.get();
+
+		SortPhaseEvent event = events[phase.ordinal()];
+
+		if (event == null) {
+			return;
+		}
+
+		events[phase.ordinal()] = null;
+
+		event.end();
+
+		if (!event.shouldCommit()) {
+			return;
+		}
+
+		event.phase = phase.name().toLowerCase(Locale.ROOT);
+		event.path = unit.getPath().toString();
+		event.members = members;
+		event.moved = moved;
+
+		event.commit();
+	}
+
+	private static final EventType _TYPE = EventType.getEventType(SortPhaseEvent.class);
+
+	// The begun events of the current thread, by phase
+	private final ThreadLocal<SortPhaseEvent[]> _events = new ThreadLocal<SortPhaseEvent[]>() {
+
+		@Override
+		protected SortPhaseEvent[] initialValue() {
+			return new SortPhaseEvent[Phase.values().length];
+		}
+
+	};
+
+}
@@ -0,0 +1,56 @@
+/*******************************************************************************
+ * Copyright 2015 Ixenit
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *******************************************************************************/
+package com.ixenit.membersort.statistics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * The Java Flight Recorder event of a phase of sorting a unit. It is
+ * disabled by default, a recording has to enable
+ * <code>MemberSort.SortPhase</code>, as there is an event per unit and
+ * phase.
+ *
+ * @author Benjámin Hajnal <benjamin.hajnal@ixenit.com>
+ *
+ */
+@Name("MemberSort.SortPhase")
+@Label("Sort Phase")
+@Category("MemberSort")
+@Description("A phase of sorting the members of a compilation unit")
+@Enabled(false)
+@StackTrace(false)
+class SortPhaseEvent extends jdk.jfr.Event {
+
+	@Label("Members")
+	@Description("The number of members of the unit, negative if not known")
+	int members;
+
+	@Label("Moved")
+	@Description("The number of moved members, negative if not known")
+	int moved;
+
+	@Label("Path")
+	String path;
+
+	@Label("Phase")
+	String phase;
+
+}
@@ -15,10 +15,38 @@
  *******************************************************************************/
 package com.ixenit.membersort;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResourceChangeEvent;
+import org.eclipse.core.resources.IResourceChangeListener;
+import org.eclipse.core.resources.ProjectScope;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.preferences.IEclipsePreferences;
+import org.eclipse.core.runtime.preferences.IEclipsePreferences.IPreferenceChangeListener;
+import org.eclipse.core.runtime.preferences.IEclipsePreferences.PreferenceChangeEvent;
+import org.eclipse.jface.preference.IPreferenceStore;
 import org.eclipse.jface.resource.ImageDescriptor;
+import org.eclipse.jface.util.IPropertyChangeListener;
+import org.eclipse.jface.util.PropertyChangeEvent;
 import org.eclipse.ui.plugin.AbstractUIPlugin;
 import org.osgi.framework.BundleContext;
 
+import com.ixenit.membersort.engine.RuleSet;
+import com.ixenit.membersort.handlers.ChangedUnits;
+import com.ixenit.membersort.handlers.SortOnSave;
+import com.ixenit.membersort.index.FingerprintIndex;
+import com.ixenit.membersort.preferences.PreferenceConstants;
+import com.ixenit.membersort.preferences.converter.OrderConverter;
+import com.ixenit.membersort.statistics.SortStatistics;
+
 /**
  * The activator class controls the plug-in life cycle
  *
@@ -57,6 +85,156 @@ public class Activator extends AbstractUIPlugin {
 		return imageDescriptorFromPlugin(PLUGIN_ID, path);
 	}
 
+	/**
+	 * Registers a listener notified in an arbitrary thread when the
+	 * statistics of a sort run are published.
+	 *
+	 * @param listener
+	 *        the listener
+	 */
+	public void addStatisticsListener(Runnable listener) {
+		_statisticsListeners.add(listener);
+	}
+
+	/**
+	 * Returns the Java files changed since they were last sorted.
+	 *
+	 * @return the changed files
+	 */
+	public ChangedUnits getChangedUnits() {
+		return _changedUnits;
+	}
+
+	/**
+	 * Returns the index of the files known to be sorted. It is stored in the
+	 * state location of the plug-in and opened on first use.
+	 *
+	 * @return the index or <code>null</code> if it cannot be opened
+	 */
+	public synchronized FingerprintIndex getFingerprintIndex() {
+		if (_fingerprintIndex == null && !_fingerprintIndexFailed) {
+			File file = getStateLocation().append(_FINGERPRINT_INDEX_FILE).toFile();
+
+			try {
+				_fingerprintIndex = FingerprintIndex.open(file);
+			}
+			catch (IOException e) {
+				_fingerprintIndexFailed = true;
+
+				getLog().log(new Status(IStatus.WARNING, PLUGIN_ID, "Cannot open the index of sorted files", e));
+			}
+		}
+
+		return _fingerprintIndex;
+	}
+
+	/**
+	 * Returns the statistics of the last sort run which collected them.
+	 *
+	 * @return the statistics or <code>null</code> if no run collected them
+	 *         yet
+	 */
+	public SortStatistics getLastStatistics() {
+		return _lastStatistics;
+	}
+
+	/**
+	 * Returns the compiled ordering rules. They are compiled from the
+	 * preferences on first use and again only after the order preferences
+	 * have changed.
+	 *
+	 * @return the shared rules
+	 */
+	public synchronized RuleSet getRuleSet() {
+		if (_ruleSet == null) {
+			IPreferenceStore preferenceStore = getPreferenceStore();
+
+			String[] order = OrderConverter.convert(preferenceStore.getString(PreferenceConstants.P_ORDER));
+			boolean orderByName = preferenceStore.getBoolean(PreferenceConstants.P_ORDER_BY_NAME);
+
+			_ruleSet = RuleSet.compile(order, orderByName);
+		}
+
+		return _ruleSet;
+	}
+
+	/**
+	 * Returns the compiled ordering rules of the given project: its own rules
+	 * if project specific rules are enabled in its settings, otherwise the
+	 * rules of the workspace. They are resolved once per project and again
+	 * only after the order preferences of the project or of the workspace
+	 * have changed.
+	 *
+	 * @param project
+	 *        the project
+	 * @return the shared rules of the project
+	 */
+	public synchronized RuleSet getRuleSet(IProject project) {
+		RuleSet ruleSet = _projectRuleSets.get(project);
+
+		if (ruleSet != null) {
+			return ruleSet;
+		}
+
+		IEclipsePreferences node = _projectNodes.get(project);
+
+		if (node == null) {
+			node = new ProjectScope(project).getNode(PLUGIN_ID);
+
+			node.addPreferenceChangeListener(_projectRuleSetInvalidator);
+
+			_projectNodes.put(project, node);
+		}
+
+		if (node.getBoolean(PreferenceConstants.P_PROJECT_SPECIFIC, false)) {
+			IPreferenceStore preferenceStore = getPreferenceStore();
+
+			// Project specific rules replace the rules of the workspace, the
+			// missing ones are the defaults
+			String[] order = OrderConverter.convert(node.get(
+				PreferenceConstants.P_ORDER, preferenceStore.getDefaultString(PreferenceConstants.P_ORDER)));
+			boolean orderByName = node.getBoolean(
+				PreferenceConstants.P_ORDER_BY_NAME,
+				preferenceStore.getDefaultBoolean(PreferenceConstants.P_ORDER_BY_NAME));
+
+			ruleSet = RuleSet.compile(order, orderByName);
+		}
+		else {
+			ruleSet = getRuleSet();
+		}
+
+		_projectRuleSets.put(project, ruleSet);
+
+		return ruleSet;
+	}
+
+	/**
+	 * Logs the statistics of a finished sort run at info level and shows them
+	 * in the statistics view.
+	 *
+	 * @param statistics
+	 *        the statistics of the run
+	 */
+	public void publishStatistics(SortStatistics statistics) {
+		_lastStatistics = statistics;
+
+		getLog().log(new Status(IStatus.INFO, PLUGIN_ID, statistics.toString()));
+
+		for (Runnable listener : _statisticsListeners) {
+			listener.run();
+		}
+	}
+
+	/**
+	 * Removes a listener registered by {@link #addStatisticsListener(Runnable)}.
+	 *
+	 * @param listener
+	 *        the listener
+	 */
+	public void removeStatisticsListener(Runnable listener) {
+		_statisticsListeners.remove(listener);
+	}
+
 	/*
 	 * (non-Javadoc)
 	 *
@@ -66,6 +244,14 @@ public class Activator extends AbstractUIPlugin {
 	public void start(BundleContext context) throws Exception {
 		super.start(context);
 		plugin = this;
+
+		getPreferenceStore().addPropertyChangeListener(_ruleSetInvalidator);
+
+		ResourcesPlugin.getWorkspace().addResourceChangeListener(
+			_projectNodeRemover, IResourceChangeEvent.PRE_CLOSE | IResourceChangeEvent.PRE_DELETE);
+
+		_sortOnSave.install();
+		_changedUnits.install();
 	}
 
 	/*
@@ -75,10 +261,133 @@ public class Activator extends AbstractUIPlugin {
 	 */
 	@Override
 	public void stop(BundleContext context) throws Exception {
+		_sortOnSave.uninstall();
+		_changedUnits.uninstall();
+
+		getPreferenceStore().removePropertyChangeListener(_ruleSetInvalidator);
+
+		ResourcesPlugin.getWorkspace().removeResourceChangeListener(_projectNodeRemover);
+
+		synchronized (this) {
+			for (IEclipsePreferences node : _projectNodes.values()) {
+				_removeListener(node);
+			}
+
+			_projectNodes.clear();
+			_projectRuleSets.clear();
+
+			if (_fingerprintIndex != null) {
+				_fingerprintIndex.close();
+				_fingerprintIndex = null;
+			}
+		}
+
 		plugin = null;
 		super.stop(context);
 	}
 
+	private void _removeListener(IEclipsePreferences node) {
+		try {
+			node.removePreferenceChangeListener(_projectRuleSetInvalidator);
+		}
+		catch (IllegalStateException e) {
+			// The project was deleted with its settings
+		}
+	}
+
+	private static final String _FINGERPRINT_INDEX_FILE = "sorted.idx";
+
 	// The shared instance
 	private static Activator plugin;
+
+	private FingerprintIndex _fingerprintIndex;
+
+	private boolean _fingerprintIndexFailed;
+
+	private volatile SortStatistics _lastStatistics;
+
+	private RuleSet _ruleSet;
+
+	private final ChangedUnits _changedUnits = new ChangedUnits();
+
+	private final Map<IProject, IEclipsePreferences> _projectNodes = new HashMap<>();
+
+	private final Map<IProject, RuleSet> _projectRuleSets = new HashMap<>();
+
+	private final SortOnSave _sortOnSave = new SortOnSave();
+
+	private final List<Runnable> _statisticsListeners = new CopyOnWriteArrayList<>();
+
+	// Drops the settings node and the resolved rules of a project when it is
+	// closed or deleted, its node is not valid after that
+	private final IResourceChangeListener _projectNodeRemover = new IResourceChangeListener() {
+
+		@Override
+		public void resourceChanged(IResourceChangeEvent event) {
+			if (!(event.getResource() instanceof IProject)) {
+				return;
+			}
+
+			IProject project = (IProject)event.getResource();
+
+			synchronized (Activator.this) {
+				IEclipsePreferences node = _projectNodes.remove(project);
+
+				if (node != null) {
+					_removeListener(node);
+				}
+
+				_projectRuleSets.remove(project);
+			}
+		}
+
+	};
+
+	// Drops the resolved rules of the projects when the order settings of a
+	// project change. The fingerprints of the sorted files contain the rules,
+	// so the index stays valid.
+	private final IPreferenceChangeListener _projectRuleSetInvalidator = new IPreferenceChangeListener() {
+
+		@Override
+		public void preferenceChange(PreferenceChangeEvent event) {
+			String key = event.getKey();
+
+			if (PreferenceConstants.P_ORDER.equals(key) || PreferenceConstants.P_ORDER_BY_NAME.equals(key)
+				|| PreferenceConstants.P_PROJECT_SPECIFIC.equals(key)) {
+
+				synchronized (Activator.this) {
+					_projectRuleSets.clear();
+				}
+			}
+		}
+
+	};
+
+	// Drops the compiled rules when the order preferences change. The
+	// fingerprints of the sorted files contain the rules, so the index stays
+	// valid: an entry of the old rules is not matched, and is replaced when
+	// its file is sorted again.
+	private final IPropertyChangeListener _ruleSetInvalidator = new IPropertyChangeListener() {
+
+		@Override
+		public void propertyChange(PropertyChangeEvent event) {
+			String property = event.getProperty();
+
+			if (PreferenceConstants.P_ORDER.equals(property)
+				|| PreferenceConstants.P_ORDER_BY_NAME.equals(property)) {
+
+				// Under the same lock as the compilation, so rules compiled
+				// from the old preferences are not stored after this
+				synchronized (Activator.this) {
+					_ruleSet = null;
+
+					// Projects without their own rules use the ones of the
+					// workspace
+					_projectRuleSets.clear();
+				}
+			}
+		}
+
+	};
+
 }
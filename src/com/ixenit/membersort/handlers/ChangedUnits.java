@@ -0,0 +1,370 @@
+/*******************************************************************************
+ * Copyright 2015 Ixenit
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *******************************************************************************/
+package com.ixenit.membersort.handlers;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IResourceChangeEvent;
+import org.eclipse.core.resources.IResourceChangeListener;
+import org.eclipse.core.resources.IResourceDelta;
+import org.eclipse.core.resources.IResourceDeltaVisitor;
+import org.eclipse.core.resources.ISaveContext;
+import org.eclipse.core.resources.ISaveParticipant;
+import org.eclipse.core.resources.ISavedState;
+import org.eclipse.core.resources.IWorkspace;
+import org.eclipse.core.resources.IWorkspaceRoot;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Path;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.IJavaElement;
+import org.eclipse.jdt.core.JavaCore;
+
+import com.ixenit.membersort.Activator;
+import com.ixenit.membersort.index.FingerprintIndex;
+
+/**
+ * Keeps the Java files changed since they were last sorted, so only those
+ * have to be sorted again (see {@link SortChangedHandler}).
+ * <p>
+ * The files are collected from the resource deltas of the workspace. The set
+ * is written to the state location of the plug-in whenever the workspace is
+ * saved, and on the next start the workspace replays the deltas since that
+ * save (see {@link ISavedState}), so files changed while the plug-in was not
+ * active or before a crash are not missed. A file is removed when a sort job
+ * covering it succeeds, unless it was changed again after it was sorted.
+ * Deleted and renamed files are removed from the
+ * {@link FingerprintIndex} as well.
+ * </p>
+ *
+ * @author Benjámin Hajnal <benjamin.hajnal@ixenit.com>
+ *
+ */
+public class ChangedUnits implements IResourceChangeListener, ISaveParticipant {
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.eclipse.core.resources.ISaveParticipant#doneSaving(org.eclipse.core.resources.ISaveContext)
+	 */
+	@Override
+	public void doneSaving(ISaveContext context) {
+		if (_isWritten(context)) {
+			_getFile(context.getPreviousSaveNumber()).delete();
+		}
+	}
+
+	/**
+	 * Tells whether the given file was changed since it was last sorted.
+	 *
+	 * @param path
+	 *        the full path of the file
+	 * @return <code>true</code> if the file is among the changed ones
+	 */
+	public boolean contains(IPath path) {
+		synchronized (_paths) {
+			return _paths.contains(path);
+		}
+	}
+
+	/**
+	 * Returns the units changed since they were last sorted.
+	 *
+	 * @return the existing units on the build path of their project
+	 */
+	public List<IJavaElement> getUnits() {
+		List<IPath> paths;
+
+		synchronized (_paths) {
+			paths = new ArrayList<>(_paths);
+		}
+
+		IWorkspaceRoot root = ResourcesPlugin.getWorkspace().getRoot();
+
+		List<IJavaElement> units = new ArrayList<>();
+
+		for (IPath path : paths) {
+			IFile file = root.getFile(path);
+
+			if (!file.exists()) {
+				continue;
+			}
+
+			IJavaElement element = JavaCore.create(file);
+
+			if (element instanceof ICompilationUnit && element.getJavaProject().isOnClasspath(element)) {
+				units.add(element);
+			}
+		}
+
+		return units;
+	}
+
+	/**
+	 * Starts collecting the changed files, with the ones changed since the
+	 * last save of the workspace.
+	 *
+	 * @throws CoreException
+	 *         if the save participant cannot be registered
+	 */
+	public void install() throws CoreException {
+		IWorkspace workspace = ResourcesPlugin.getWorkspace();
+
+		ISavedState lastState = workspace.addSaveParticipant(Activator.PLUGIN_ID, this);
+
+		workspace.addResourceChangeListener(this, IResourceChangeEvent.POST_CHANGE);
+
+		if (lastState == null) {
+			return;
+		}
+
+		IPath file = lastState.lookup(_SAVE_KEY);
+
+		if (file != null) {
+			_read(Activator.getDefault().getStateLocation().append(file).toFile());
+		}
+
+		lastState.processResourceChangeEvents(this);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.eclipse.core.resources.ISaveParticipant#prepareToSave(org.eclipse.core.resources.ISaveContext)
+	 */
+	@Override
+	public void prepareToSave(ISaveContext context) {
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.eclipse.core.resources.IResourceChangeListener#resourceChanged(org.eclipse.core.resources.IResourceChangeEvent)
+	 */
+	@Override
+	public void resourceChanged(IResourceChangeEvent event) {
+		if (event.getDelta() == null) {
+			return;
+		}
+
+		final List<IPath> changed = new ArrayList<>();
+		final List<IPath> removed = new ArrayList<>();
+
+		try {
+			event.getDelta().accept(new IResourceDeltaVisitor() {
+
+				@Override
+				public boolean visit(IResourceDelta delta) {
+					IResource resource = delta.getResource();
+
+					if (resource.getType() != IResource.FILE) {
+						return true;
+					}
+
+					if (!"java".equals(resource.getFileExtension())) {
+						return false;
+					}
+
+					if (delta.getKind() == IResourceDelta.ADDED || (delta.getKind() == IResourceDelta.CHANGED
+						&& (delta.getFlags() & IResourceDelta.CONTENT) != 0)) {
+
+						changed.add(resource.getFullPath());
+					}
+					else if (delta.getKind() == IResourceDelta.REMOVED) {
+						removed.add(resource.getFullPath());
+					}
+
+					return false;
+				}
+
+			});
+		}
+		catch (CoreException e) {
+			Activator.getDefault().getLog().log(e.getStatus());
+		}
+
+		synchronized (_paths) {
+			_paths.removeAll(removed);
+			_paths.addAll(changed);
+		}
+
+		if (removed.isEmpty()) {
+			return;
+		}
+
+		// A deleted or renamed file is not kept in the index of sorted files
+		FingerprintIndex index = Activator.getDefault().getFingerprintIndex();
+
+		if (index != null) {
+			for (IPath path : removed) {
+				index.remove(path.toString());
+			}
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.eclipse.core.resources.ISaveParticipant#rollback(org.eclipse.core.resources.ISaveContext)
+	 */
+	@Override
+	public void rollback(ISaveContext context) {
+		if (_isWritten(context)) {
+			_getFile(context.getSaveNumber()).delete();
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.eclipse.core.resources.ISaveParticipant#saving(org.eclipse.core.resources.ISaveContext)
+	 */
+	@Override
+	public void saving(ISaveContext context) throws CoreException {
+		if (!_isWritten(context)) {
+			return;
+		}
+
+		List<IPath> paths;
+
+		synchronized (_paths) {
+			paths = new ArrayList<>(_paths);
+		}
+
+		int saveNumber = context.getSaveNumber();
+
+		try (Writer writer = new BufferedWriter(
+			new OutputStreamWriter(new FileOutputStream(_getFile(saveNumber)), StandardCharsets.UTF_8))) {
+
+			for (IPath path : paths) {
+				writer.write(path.toString());
+				writer.write('\n');
+			}
+		}
+		catch (IOException e) {
+			throw new CoreException(
+				new Status(IStatus.ERROR, Activator.PLUGIN_ID, "Cannot save the changed Java files", e));
+		}
+
+		context.map(_SAVE_KEY, new Path(_getName(saveNumber)));
+		context.needSaveNumber();
+
+		// The deltas since this save are replayed on the next start
+		context.needDelta();
+	}
+
+	/**
+	 * Removes the sorted files which were not changed since they were
+	 * sorted. A file saved again while the job was running stays.
+	 *
+	 * @param stamps
+	 *        the modification stamps of the files after they were sorted by a
+	 *        job
+	 * @param failed
+	 *        the units which could not be sorted
+	 */
+	public void sorted(Map<IPath, Long> stamps, Collection<ICompilationUnit> failed) {
+		IWorkspaceRoot root = ResourcesPlugin.getWorkspace().getRoot();
+
+		List<IPath> unchanged = new ArrayList<>();
+
+		for (Entry<IPath, Long> entry : stamps.entrySet()) {
+			if (root.getFile(entry.getKey()).getModificationStamp() == entry.getValue()) {
+				unchanged.add(entry.getKey());
+			}
+		}
+
+		synchronized (_paths) {
+			_paths.removeAll(unchanged);
+
+			for (ICompilationUnit unit : failed) {
+				_paths.add(unit.getPath());
+			}
+		}
+	}
+
+	/**
+	 * Stops collecting the changed files.
+	 */
+	public void uninstall() {
+		IWorkspace workspace = ResourcesPlugin.getWorkspace();
+
+		workspace.removeResourceChangeListener(this);
+		workspace.removeSaveParticipant(Activator.PLUGIN_ID);
+	}
+
+	private static File _getFile(int saveNumber) {
+		return Activator.getDefault().getStateLocation().append(_getName(saveNumber)).toFile();
+	}
+
+	private static String _getName(int saveNumber) {
+		return _SAVE_FILE_PREFIX + saveNumber;
+	}
+
+	/**
+	 * Tells whether the set is written by the given save. A project save
+	 * would only cover the files of a single project.
+	 */
+	private static boolean _isWritten(ISaveContext context) {
+		return context.getKind() == ISaveContext.FULL_SAVE || context.getKind() == ISaveContext.SNAPSHOT;
+	}
+
+	private void _read(File file) {
+		try (BufferedReader reader = new BufferedReader(
+			new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+
+			synchronized (_paths) {
+				for (String line; (line = reader.readLine()) != null;) {
+					if (!line.isEmpty()) {
+						_paths.add(new Path(line));
+					}
+				}
+			}
+		}
+		catch (IOException e) {
+			Activator.getDefault().getLog().log(
+				new Status(IStatus.WARNING, Activator.PLUGIN_ID, "Cannot read the changed Java files", e));
+		}
+	}
+
+	private static final String _SAVE_FILE_PREFIX = "changed-";
+
+	private static final IPath _SAVE_KEY = new Path("changedUnits");
+
+	private final Set<IPath> _paths = new HashSet<>();
+
+}
@@ -0,0 +1,106 @@
+/*******************************************************************************
+ * Copyright 2015 Ixenit
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *******************************************************************************/
+package com.ixenit.membersort.handlers;
+
+import java.nio.charset.StandardCharsets;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.JavaModelException;
+
+import com.ixenit.membersort.engine.RuleSet;
+import com.ixenit.membersort.index.FingerprintIndex;
+
+/**
+ * Computes the fingerprints of units for the {@link FingerprintIndex}.
+ *
+ * @author Benjámin Hajnal <benjamin.hajnal@ixenit.com>
+ *
+ */
+class Fingerprints {
+
+	/**
+	 * Computes the fingerprint of the saved content of the given unit sorted
+	 * with the given rules.
+	 *
+	 * @param unit
+	 *        the unit
+	 * @param ruleSet
+	 *        the rules
+	 * @return the fingerprint or 0 if the unit has no saved state to compare,
+	 *         e.g. it has unsaved changes in an editor
+	 */
+	static long compute(ICompilationUnit unit, RuleSet ruleSet) {
+		try {
+			return compute(unit, unit.getSource(), ruleSet);
+		}
+		catch (JavaModelException e) {
+			return 0;
+		}
+	}
+
+	/**
+	 * Computes the fingerprint of the given content of the unit sorted with
+	 * the given rules.
+	 *
+	 * @param unit
+	 *        the unit
+	 * @param source
+	 *        the content of the unit, read once for sorting it
+	 * @param ruleSet
+	 *        the rules
+	 * @return the fingerprint or 0 if the unit has no saved state to compare,
+	 *         e.g. it has unsaved changes in an editor
+	 */
+	static long compute(ICompilationUnit unit, String source, RuleSet ruleSet) {
+		if (!(unit.getResource() instanceof IFile) || source == null) {
+			return 0;
+		}
+
+		try {
+			if (unit.hasUnsavedChanges()) {
+				return 0;
+			}
+		}
+		catch (JavaModelException e) {
+			return 0;
+		}
+
+		long hash = FingerprintIndex.hash(FingerprintIndex.HASH_SEED, ruleSet.getFingerprint());
+
+		byte[] bytes = source.getBytes(StandardCharsets.UTF_8);
+
+		hash = FingerprintIndex.hash(hash, bytes, bytes.length);
+
+		return (hash == 0) ? 1 : hash;
+	}
+
+	/**
+	 * Returns the key of the given unit in the index.
+	 *
+	 * @param unit
+	 *        the unit
+	 * @return the full path of the unit in the workspace
+	 */
+	static String getPath(ICompilationUnit unit) {
+		return unit.getPath().toString();
+	}
+
+	private Fingerprints() {
+		// Only static methods
+	}
+
+}
@@ -0,0 +1,46 @@
+/*******************************************************************************
+ * Copyright 2015 Ixenit
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *******************************************************************************/
+package com.ixenit.membersort.handlers;
+
+import org.eclipse.jdt.core.dom.CompilationUnit;
+
+/**
+ * The AST an editor's reconciler built for a working copy, with the content
+ * it was built from. The AST can only be reused as long as the content is
+ * the same.
+ *
+ * @author Benjámin Hajnal <benjamin.hajnal@ixenit.com>
+ *
+ */
+final class ReconciledAst {
+
+	ReconciledAst(CompilationUnit ast, String source) {
+		this.ast = ast;
+		this.source = source;
+	}
+
+	/**
+	 * Tells whether the AST was built from the given content.
+	 */
+	boolean matches(String source) {
+		return this.source.equals(source);
+	}
+
+	final CompilationUnit ast;
+
+	final String source;
+
+}
@@ -0,0 +1,429 @@
+/*******************************************************************************
+ * Copyright 2015 Ixenit
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *******************************************************************************/
+package com.ixenit.membersort.handlers;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.JavaModelException;
+import org.eclipse.jdt.core.dom.AST;
+import org.eclipse.jdt.core.dom.ASTParser;
+import org.eclipse.jdt.core.dom.ASTRequestor;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.jdt.core.util.CompilationUnitSorter;
+import org.eclipse.text.edits.TextEdit;
+
+import com.ixenit.membersort.engine.MemberComparator;
+import com.ixenit.membersort.engine.MemberLists;
+import com.ixenit.membersort.engine.MemberSorter;
+import com.ixenit.membersort.engine.OrderChecker;
+import com.ixenit.membersort.engine.RuleSet;
+import com.ixenit.membersort.engine.Violation;
+import com.ixenit.membersort.index.FingerprintIndex;
+import com.ixenit.membersort.statistics.PerformanceEvents;
+import com.ixenit.membersort.statistics.SortStatistics;
+import com.ixenit.membersort.statistics.SortStatistics.Phase;
+
+/**
+ * Parses a batch of units with a single
+ * {@link ASTParser#createASTs(ICompilationUnit[], String[], ASTRequestor, IProgressMonitor)}
+ * call and sorts every AST as soon as it arrives.
+ * <p>
+ * Only the computed edits are kept, the AST of a unit can be collected as
+ * soon as the requestor returns. Every unit of the batch gets exactly one
+ * {@link SortResult} in the result queue, even if parsing fails.
+ * </p>
+ * <p>
+ * Units recorded in the {@link FingerprintIndex} with their current content
+ * and rules are reported as up to date without parsing them.
+ * </p>
+ * <p>
+ * In check only mode the order of the members is only verified with an
+ * {@link OrderChecker}, no edit is computed.
+ * </p>
+ * <p>
+ * With a structural parse the units are parsed without their method bodies
+ * first, which is enough to check the order of their members. Only the
+ * units which are not known to be sorted that way are parsed in full and
+ * sorted.
+ * </p>
+ *
+ * @author Benjámin Hajnal <benjamin.hajnal@ixenit.com>
+ *
+ */
+class SortBatchTask implements Runnable {
+
+	@Override
+	public void run() {
+
+		// The job was cancelled while the batch was queued
+		if (_monitor.isCanceled()) {
+			return;
+		}
+
+		final Map<ICompilationUnit, Long> fingerprints = new HashMap<>();
+		final Map<ICompilationUnit, String> sources = new HashMap<>();
+
+		List<ICompilationUnit> units = new ArrayList<>(_units.size());
+
+		// Units recorded as sorted in the index are not parsed at all
+		for (ICompilationUnit unit : _units) {
+
+			// Read once, the fingerprint, the scan of the bodies and the edits
+			// are all computed from the content the AST is parsed from
+			String source;
+
+			try {
+				source = unit.getSource();
+			}
+			catch (JavaModelException e) {
+				if (!_offer(SortResult.failed(unit, e))) {
+					return;
+				}
+
+				continue;
+			}
+
+			if (source == null) {
+				if (!_offer(SortResult.failed(unit, new IllegalStateException("The unit has no source")))) {
+					return;
+				}
+
+				continue;
+			}
+
+			long fingerprint = (_index != null) ? Fingerprints.compute(unit, source, _ruleSet) : 0;
+
+			if (fingerprint != 0 && _index.contains(Fingerprints.getPath(unit), fingerprint)) {
+				if (!_offer(SortResult.upToDate(unit))) {
+					return;
+				}
+
+				continue;
+			}
+
+			fingerprints.put(unit, fingerprint);
+			sources.put(unit, source);
+			units.add(unit);
+		}
+
+		if (units.isEmpty()) {
+			return;
+		}
+
+		Set<ICompilationUnit> accepted = new HashSet<>();
+
+		Exception failure = null;
+
+		try {
+			List<ICompilationUnit> fullUnits = units;
+
+			// Only the units found unsorted without their method bodies are
+			// parsed again in full
+			if (_structuralParse) {
+				fullUnits = new ArrayList<>();
+
+				_parse(units, true, sources, fingerprints, accepted, fullUnits);
+			}
+
+			if (!fullUnits.isEmpty()) {
+				_parse(fullUnits, false, sources, fingerprints, accepted, null);
+			}
+		}
+		catch (RuntimeException e) {
+			failure = e;
+		}
+
+		// Report the units the parser did not hand over
+		for (ICompilationUnit unit : units) {
+			if (Thread.currentThread().isInterrupted()) {
+				return;
+			}
+
+			if (!accepted.contains(unit)) {
+				Exception exception = (failure != null) ? failure
+					: new IllegalStateException("The unit could not be parsed");
+
+				_offer(SortResult.failed(unit, exception));
+			}
+		}
+	}
+
+	/**
+	 * @param units
+	 *        the units of the batch
+	 * @param ruleSet
+	 *        the rules to sort with
+	 * @param sorter
+	 *        the sorter moving only the members out of place,
+	 *        <code>null</code> to sort with <code>CompilationUnitSorter</code>
+	 * @param index
+	 *        the index of sorted units, <code>null</code> to parse every unit
+	 * @param results
+	 *        the queue receiving the results
+	 * @param monitor
+	 *        the monitor cancelling the parser
+	 * @param statistics
+	 *        the statistics of the run, <code>null</code> if they are not
+	 *        collected
+	 * @param checkOnly
+	 *        whether the order is only checked instead of sorting the units
+	 * @param structuralParse
+	 *        whether the units are parsed without method bodies first, and
+	 *        only the unsorted ones in full
+	 */
+	SortBatchTask(
+		List<ICompilationUnit> units, RuleSet ruleSet, MemberSorter sorter, FingerprintIndex index,
+		BlockingQueue<SortResult> results, IProgressMonitor monitor, SortStatistics statistics, boolean checkOnly,
+		boolean structuralParse) {
+
+		_units = units;
+		_ruleSet = ruleSet;
+		_sorter = sorter;
+		_index = index;
+		_results = results;
+		_monitor = monitor;
+		_statistics = statistics;
+		_checkOnly = checkOnly;
+		_structuralParse = structuralParse;
+	}
+
+	private SortResult _check(ICompilationUnit unit, CompilationUnit ast, long fingerprint) {
+		try {
+			long start = System.nanoTime();
+
+			PerformanceEvents.begin(Phase.CHECK);
+
+			List<Violation> violations = new OrderChecker(_ruleSet).check(ast);
+
+			_record(Phase.CHECK, System.nanoTime() - start, unit, -1, -1);
+
+			return SortResult.checked(unit, violations, fingerprint);
+		}
+		catch (Exception e) {
+			return SortResult.failed(unit, e);
+		}
+	}
+
+	/**
+	 * Tells whether a unit parsed without method bodies is known to be
+	 * sorted. Classes declared in the skipped bodies are not checked, a unit
+	 * which may have one is not known to be sorted.
+	 */
+	private boolean _isSorted(ICompilationUnit unit, CompilationUnit ast, String source) {
+		long start = System.nanoTime();
+
+		PerformanceEvents.begin(Phase.CHECK);
+
+		boolean sorted = new OrderChecker(_ruleSet).check(ast).isEmpty()
+			&& !MemberLists.mayHaveClassesInBodies(ast, source);
+
+		_record(Phase.CHECK, System.nanoTime() - start, unit, -1, -1);
+
+		return sorted;
+	}
+
+	/**
+	 * Tells whether the unit still has the content read before parsing it,
+	 * i.e. the AST was parsed from that content.
+	 */
+	private static boolean _isUnchanged(ICompilationUnit unit, String source) {
+		try {
+			return source.equals(unit.getSource());
+		}
+		catch (JavaModelException e) {
+			return false;
+		}
+	}
+
+	private boolean _offer(SortResult result) {
+		try {
+			// The queue holds at most the units in flight of the job
+			_results.put(result);
+
+			return true;
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+
+			return false;
+		}
+	}
+
+	/**
+	 * Parses the given units and hands every AST over as soon as it is
+	 * parsed. A structural parse skips the method bodies, and only reports
+	 * the units found sorted, the rest is added to the unsorted ones.
+	 */
+	private void _parse(
+		List<ICompilationUnit> units, final boolean structural, final Map<ICompilationUnit, String> sources,
+		final Map<ICompilationUnit, Long> fingerprints, final Set<ICompilationUnit> accepted,
+		final List<ICompilationUnit> unsorted) {
+
+		// The units are parsed one after the other, a unit is parsed between
+		// handing over the previous one and itself
+		final long[] parsed = { System.nanoTime() };
+
+		PerformanceEvents.begin(Phase.PARSE);
+
+		ASTParser parser = ASTParser.newParser(AST.JLS8);
+
+		// The units of a job are in one project, parsed with its compliance
+		// and source level
+		parser.setProject(units.get(0).getJavaProject());
+
+		if (structural) {
+			parser.setIgnoreMethodBodies(true);
+			parser.setStatementsRecovery(false);
+		}
+
+		parser.createASTs(units.toArray(new ICompilationUnit[units.size()]), new String[0], new ASTRequestor() {
+
+			@Override
+			public void acceptAST(ICompilationUnit source, CompilationUnit ast) {
+				_record(Phase.PARSE, System.nanoTime() - parsed[0], source, -1, -1);
+
+				Long known = fingerprints.get(source);
+
+				long fingerprint = (known != null) ? known : 0;
+
+				String content = sources.get(source);
+
+				SortResult result;
+
+				if (!_isUnchanged(source, content)) {
+					result = SortResult.failed(
+						source, new IllegalStateException("The unit was changed while it was sorted"));
+				}
+				else if (!structural) {
+					result = _checkOnly ? _check(source, ast, fingerprint) : _sort(source, ast, content, fingerprint);
+				}
+				else if (_isSorted(source, ast, content)) {
+					result = _checkOnly ? SortResult.checked(source, Collections.<Violation> emptyList(), fingerprint)
+						: SortResult.sorted(source, null, null, fingerprint);
+				}
+				else {
+					unsorted.add(source);
+
+					parsed[0] = System.nanoTime();
+
+					PerformanceEvents.begin(Phase.PARSE);
+
+					return;
+				}
+
+				accepted.add(source);
+
+				if (!_offer(result)) {
+					throw new OperationCanceledException();
+				}
+
+				parsed[0] = System.nanoTime();
+
+				PerformanceEvents.begin(Phase.PARSE);
+			}
+
+		}, _monitor);
+	}
+
+	/**
+	 * Adds a phase of a unit to the statistics of the run and reports it as
+	 * a performance event.
+	 */
+	private void _record(Phase phase, long nanos, ICompilationUnit unit, int members, int moved) {
+		if (_statistics != null) {
+			_statistics.addTime(phase, nanos);
+		}
+
+		PerformanceEvents.record(phase, nanos, unit, members, moved);
+	}
+
+	/**
+	 * Sorts a unit parsed from the given content. The edits are only applied
+	 * if the content is not changed in the meantime.
+	 */
+	private SortResult _sort(ICompilationUnit unit, CompilationUnit ast, String source, long fingerprint) {
+		try {
+			long start = System.nanoTime();
+
+			PerformanceEvents.begin(Phase.CLASSIFY);
+
+			// Classify every member once, the sort only compares the keys
+			MemberComparator comparator = new MemberComparator(_ruleSet);
+			comparator.computeKeys(ast);
+
+			int members = comparator.getMemberCount();
+
+			long classified = System.nanoTime();
+
+			_record(Phase.CLASSIFY, classified - start, unit, members, -1);
+
+			PerformanceEvents.begin(Phase.SORT);
+
+			TextEdit edits;
+
+			if (_sorter != null) {
+				edits = _sorter.computeEdits(ast, source, comparator);
+			}
+			else {
+				// This helper method will sort our java code with the given comparator.
+				// It gives us null if there weren't any changes.
+				edits = CompilationUnitSorter.sort(ast, comparator, 0, null, null);
+			}
+
+			int moved = (_sorter != null) ? comparator.getMovedCount() : -1;
+
+			_record(Phase.SORT, System.nanoTime() - classified, unit, members, moved);
+
+			if (_statistics != null) {
+				_statistics.addUnit(members, Math.max(0, moved), comparator.getUnmatched());
+			}
+
+			return SortResult.sorted(unit, (edits != null) ? source : null, edits, fingerprint);
+		}
+		catch (Exception e) {
+			return SortResult.failed(unit, e);
+		}
+	}
+
+	private final boolean _checkOnly;
+
+	private final FingerprintIndex _index;
+
+	private final IProgressMonitor _monitor;
+
+	private final BlockingQueue<SortResult> _results;
+
+	private final RuleSet _ruleSet;
+
+	private final MemberSorter _sorter;
+
+	private final SortStatistics _statistics;
+
+	private final boolean _structuralParse;
+
+	private final List<ICompilationUnit> _units;
+
+}
@@ -0,0 +1,63 @@
+/*******************************************************************************
+ * Copyright 2015 Ixenit
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *******************************************************************************/
+package com.ixenit.membersort.handlers;
+
+import java.util.List;
+
+import org.eclipse.core.commands.AbstractHandler;
+import org.eclipse.core.commands.ExecutionEvent;
+import org.eclipse.core.commands.ExecutionException;
+import org.eclipse.jdt.core.IJavaElement;
+import org.eclipse.jface.dialogs.MessageDialog;
+import org.eclipse.ui.IWorkbenchWindow;
+import org.eclipse.ui.handlers.HandlerUtil;
+
+import com.ixenit.membersort.Activator;
+
+/**
+ * Sorts the Java files of the workspace changed since they were last sorted
+ * (see {@link ChangedUnits}), regardless of the selection.
+ *
+ * @author Benjámin Hajnal <benjamin.hajnal@ixenit.com>
+ *
+ */
+public class SortChangedHandler extends AbstractHandler {
+
+	/**
+	 * Constructor is needed for Eclipse
+	 */
+	public SortChangedHandler() {
+	}
+
+	@Override
+	public Object execute(ExecutionEvent event) throws ExecutionException {
+		IWorkbenchWindow window = HandlerUtil.getActiveWorkbenchWindowChecked(event);
+
+		List<IJavaElement> units = Activator.getDefault().getChangedUnits().getUnits();
+
+		if (units.isEmpty()) {
+			MessageDialog.openInformation(
+				window.getShell(), "SortMembers", "No Java file was changed since it was last sorted.");
+
+			return null;
+		}
+
+		SortHandler.schedule(window, units);
+
+		return null;
+	}
+
+}
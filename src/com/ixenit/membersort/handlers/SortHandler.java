@@ -17,35 +17,45 @@ package com.ixenit.membersort.handlers;
 
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.eclipse.core.commands.AbstractHandler;
 import org.eclipse.core.commands.ExecutionEvent;
 import org.eclipse.core.commands.ExecutionException;
 import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.runtime.IAdaptable;
+import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Platform;
+import org.eclipse.core.runtime.jobs.IJobChangeEvent;
+import org.eclipse.core.runtime.jobs.JobChangeAdapter;
 import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.IJavaElement;
 import org.eclipse.jdt.core.IPackageFragment;
+import org.eclipse.jdt.core.IPackageFragmentRoot;
 import org.eclipse.jdt.core.JavaCore;
 import org.eclipse.jdt.core.JavaModelException;
-import org.eclipse.jdt.core.WorkingCopyOwner;
-import org.eclipse.jdt.core.dom.AST;
-import org.eclipse.jdt.core.dom.ASTParser;
-import org.eclipse.jdt.core.dom.CompilationUnit;
-import org.eclipse.jdt.core.util.CompilationUnitSorter;
 import org.eclipse.jface.dialogs.MessageDialog;
-import org.eclipse.jface.text.BadLocationException;
 import org.eclipse.jface.viewers.ISelection;
 import org.eclipse.jface.viewers.IStructuredSelection;
-import org.eclipse.text.edits.MalformedTreeException;
-import org.eclipse.text.edits.TextEdit;
 import org.eclipse.ui.IEditorInput;
 import org.eclipse.ui.IEditorPart;
 import org.eclipse.ui.ISelectionService;
 import org.eclipse.ui.IWorkbenchPage;
 import org.eclipse.ui.IWorkbenchWindow;
+import org.eclipse.ui.IWorkingSet;
 import org.eclipse.ui.handlers.HandlerUtil;
 
+import com.ixenit.membersort.Activator;
+import com.ixenit.membersort.preferences.PreferenceConstants;
+
 /**
  *
  * @author Benjámin Hajnal <benjamin.hajnal@ixenit.com>
@@ -63,7 +73,7 @@ public class SortHandler extends AbstractHandler {
 	public Object execute(ExecutionEvent event) throws ExecutionException {
 
 		// Get the current window
-		IWorkbenchWindow window = HandlerUtil.getActiveWorkbenchWindowChecked(event);
+		final IWorkbenchWindow window = HandlerUtil.getActiveWorkbenchWindowChecked(event);
 
 		// Get the actual selection
 		ISelectionService selectionService = window.getSelectionService();
@@ -73,7 +83,7 @@ public class SortHandler extends AbstractHandler {
 		// then the sorting should be applied to this selection
 		if (selection != null && (selection instanceof IStructuredSelection)) {
 			try {
-				_sortSelection((IStructuredSelection)selection);
+				schedule(window, _collectElements((IStructuredSelection)selection));
 			}
 			catch (Exception e) {
 				_showError(window, e);
@@ -99,42 +109,152 @@ public class SortHandler extends AbstractHandler {
 		// Create a Java compilation unit from the file
 		ICompilationUnit cu = JavaCore.createCompilationUnitFrom(file);
 
-		try {
-			_processUnit(cu);
-		}
-		catch (Exception e) {
-			_showError(window, e);
+		if (cu != null) {
+			schedule(window, Collections.<IJavaElement> singletonList(cu));
 		}
 
 		return null;
 	}
 
-	private void _processUnit(ICompilationUnit cu)
-		throws JavaModelException, MalformedTreeException, BadLocationException {
+	/**
+	 * Sorts the given elements in the background, a batch run ends with a
+	 * summary.
+	 *
+	 * @param window
+	 *        the window showing the summary
+	 * @param elements
+	 *        projects, source folders, packages or compilation units, none of
+	 *        them contained by an other
+	 */
+	static void schedule(final IWorkbenchWindow window, List<IJavaElement> elements) {
+		if (elements.isEmpty()) {
+			return;
+		}
+
+		int threads = Activator.getDefault().getPreferenceStore().getInt(PreferenceConstants.P_THREADS);
+
+		// The rules of every project are resolved once for the whole run
+		final List<SortJob> jobs = SortJob.create(elements, null, threads, false);
+
+		// A single unit is sorted silently, a batch run ends with a summary
+		// when its last job is done. Failures are reported by the result
+		// status of the jobs.
+		boolean singleUnit = (elements.size() == 1)
+			&& (elements.get(0).getElementType() == IJavaElement.COMPILATION_UNIT);
 
-		// Parse the javacode to be able to modify it
-		ASTParser parser = ASTParser.newParser(AST.JLS8);
-		parser.setSource(cu);
+		if (!singleUnit) {
+			final AtomicInteger running = new AtomicInteger(jobs.size());
 
-		// Create a copy of the CompilationUnit to work on
-		CompilationUnit copyOfUnit = (CompilationUnit)parser.createAST(null);
+			JobChangeAdapter listener = new JobChangeAdapter() {
 
-		MemberComparator comparator = new MemberComparator();
+				@Override
+				public void done(IJobChangeEvent event) {
+					if (running.decrementAndGet() == 0) {
+						_showSummary(window, jobs);
+					}
+				}
+
+			};
+
+			for (SortJob job : jobs) {
+				job.addJobChangeListener(listener);
+			}
+		}
+
+		for (SortJob job : jobs) {
+			job.schedule();
+		}
+	}
 
-		// This helper method will sort our java code with the given comparator
-		TextEdit edits = CompilationUnitSorter.sort(copyOfUnit, comparator, 0, null, null);
+	private void _addElement(Collection<IJavaElement> elements, Object selected) throws JavaModelException {
+		IJavaElement element = Platform.getAdapterManager().getAdapter(selected, IJavaElement.class);
 
-		// The sort method gives us null if there weren't any changes
-		if (edits != null) {
-			ICompilationUnit workingCopy = cu.getWorkingCopy(new WorkingCopyOwner() {}, null);
+		if (element == null) {
+			IResource resource = Platform.getAdapterManager().getAdapter(selected, IResource.class);
 
-			workingCopy.applyTextEdit(edits, null);
+			if (resource != null) {
+				element = JavaCore.create(resource);
+			}
+		}
+
+		if (element == null || !element.exists()) {
+			return;
+		}
+
+		switch (element.getElementType()) {
+			case IJavaElement.JAVA_PROJECT:
+			case IJavaElement.PACKAGE_FRAGMENT_ROOT:
+			case IJavaElement.COMPILATION_UNIT:
+				elements.add(element);
+				break;
+
+			case IJavaElement.PACKAGE_FRAGMENT:
+				IPackageFragment pkg = (IPackageFragment)element;
+
+				elements.add(pkg);
+
+				// The subpackages are siblings of the package in the Java model
+				if (!pkg.isDefaultPackage()) {
+					String prefix = pkg.getElementName() + ".";
+
+					for (IJavaElement child : ((IPackageFragmentRoot)pkg.getParent()).getChildren()) {
+						if (child.getElementName().startsWith(prefix)) {
+							elements.add(child);
+						}
+					}
+				}
+
+				break;
+
+			default:
+
+				// Types, methods, etc. are sorted with their compilation unit
+				IJavaElement unit = element.getAncestor(IJavaElement.COMPILATION_UNIT);
+
+				if (unit != null) {
+					elements.add(unit);
+				}
 
-			// Commit changes
-			workingCopy.commitWorkingCopy(true, null);
+				break;
 		}
 	}
 
+	private List<IJavaElement> _collectElements(IStructuredSelection selection) throws JavaModelException {
+		Set<IJavaElement> elements = new LinkedHashSet<>();
+
+		// Iterate through the selected elements
+		for (Iterator<?> iterator = selection.iterator(); iterator.hasNext();) {
+			Object selected = iterator.next();
+
+			if (selected instanceof IWorkingSet) {
+				for (IAdaptable adaptable : ((IWorkingSet)selected).getElements()) {
+					_addElement(elements, adaptable);
+				}
+			}
+			else {
+				_addElement(elements, selected);
+			}
+		}
+
+		// Drop the elements which are contained by another selected element,
+		// so no unit is enumerated twice
+		List<IJavaElement> topLevelElements = new ArrayList<>();
+
+		for (IJavaElement element : elements) {
+			IJavaElement parent = element.getParent();
+
+			while (parent != null && !elements.contains(parent)) {
+				parent = parent.getParent();
+			}
+
+			if (parent == null) {
+				topLevelElements.add(element);
+			}
+		}
+
+		return topLevelElements;
+	}
+
 	private void _showError(IWorkbenchWindow window, Exception e) {
 		StringWriter sw = new StringWriter();
 
@@ -146,28 +266,47 @@ public class SortHandler extends AbstractHandler {
 		MessageDialog.openError(window.getShell(), "SortMembers", msg);
 	}
 
-	private void _sortSelection(IStructuredSelection selection)
-		throws JavaModelException, MalformedTreeException, BadLocationException {
+	private static void _showSummary(final IWorkbenchWindow window, List<SortJob> jobs) {
+		int scanned = 0;
+		int skipped = 0;
+		int changed = 0;
+		int failed = 0;
+		boolean cancelled = false;
 
-		// Iterate through the selected elements
-		for (Iterator<?> iterator = selection.iterator(); iterator.hasNext();) {
-			Object fragment = iterator.next();
+		for (SortJob job : jobs) {
+			scanned += job.getScanned();
+			skipped += job.getSkipped();
+			changed += job.getChanged();
+			failed += job.getFailed();
+
+			IStatus result = job.getResult();
 
-			// If the current element is a java package the retrieve
-			// its compilation units and process them
-			if (fragment instanceof IPackageFragment) {
-				IPackageFragment pkg = (IPackageFragment)fragment;
+			cancelled |= (result != null) && (result.getSeverity() == IStatus.CANCEL);
+		}
 
-				ICompilationUnit[] compilationUnits = pkg.getCompilationUnits();
+		StringBuilder sb = new StringBuilder();
 
-				for (ICompilationUnit iCompilationUnit : compilationUnits) {
-					_processUnit(iCompilationUnit);
+		if (cancelled) {
+			sb.append("Sorting was cancelled.\n\n");
+		}
+
+		sb.append("Scanned: ").append(scanned);
+		sb.append("\nUnchanged since last sort: ").append(skipped);
+		sb.append("\nChanged: ").append(changed);
+		sb.append("\nFailed: ").append(failed);
+
+		final String msg = sb.toString();
+
+		window.getShell().getDisplay().asyncExec(new Runnable() {
+
+			@Override
+			public void run() {
+				if (!window.getShell().isDisposed()) {
+					MessageDialog.openInformation(window.getShell(), "SortMembers", msg);
 				}
 			}
-			else if (fragment instanceof ICompilationUnit) {
-				_processUnit((ICompilationUnit)fragment);
-			}
-		}
+
+		});
 	}
 
 }
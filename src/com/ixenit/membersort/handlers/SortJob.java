@@ -0,0 +1,618 @@
+/*******************************************************************************
+ * Copyright 2015 Ixenit
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *******************************************************************************/
+package com.ixenit.membersort.handlers;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.resources.WorkspaceJob;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.MultiStatus;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.SubMonitor;
+import org.eclipse.core.runtime.jobs.IJobChangeEvent;
+import org.eclipse.core.runtime.jobs.JobChangeAdapter;
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.IJavaElement;
+import org.eclipse.jdt.core.IJavaProject;
+import org.eclipse.jdt.core.JavaModelException;
+import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.text.edits.MalformedTreeException;
+import org.eclipse.text.edits.TextEdit;
+
+import com.ixenit.membersort.Activator;
+import com.ixenit.membersort.engine.MemberSorter;
+import com.ixenit.membersort.engine.RuleSet;
+import com.ixenit.membersort.engine.Violation;
+import com.ixenit.membersort.index.FingerprintIndex;
+import com.ixenit.membersort.index.RunJournal;
+import com.ixenit.membersort.preferences.PreferenceConstants;
+import com.ixenit.membersort.statistics.SortStatistics;
+
+/**
+ * Sorts the members of the compilation units below the given Java elements
+ * in the background.
+ * <p>
+ * The job can be cancelled between two units. A unit which cannot be sorted
+ * does not stop the job, its error is collected into the result status.
+ * </p>
+ * <p>
+ * Units are parsed in batches and sorted by a bounded pool of worker threads
+ * (see {@link SortBatchTask}), only applying and committing the edits is
+ * done one unit at a time. The units are enumerated lazily while the
+ * workers run (see {@link UnitIterator}). A job covers a single project and
+ * locks only that project, the jobs of a run share the worker threads (see
+ * {@link SortRun}).
+ * </p>
+ * <p>
+ * At most a configured number of units are in flight, i.e. handed to the
+ * workers but not applied yet, in all the jobs of a run together.
+ * Enumerating stops while the limit is reached, so the memory of a run does
+ * not grow with the size of the selection or the number of projects. A
+ * worker keeps the AST of a unit only until its edits are computed.
+ * </p>
+ * <p>
+ * The units are committed in the workspace operation of the job, whose
+ * scheduling rule is its project, so sorting thousands of units fires a
+ * single resource change event, and triggers a single build, when the job
+ * ends.
+ * </p>
+ * <p>
+ * A sort job keeps a {@link RunJournal} of the processed units, so running
+ * the same selection again after the job was cancelled or Eclipse stopped
+ * resumes where it stopped.
+ * </p>
+ * <p>
+ * A sort job which ends without errors marks the files of its elements as
+ * sorted, except the failed ones (see {@link ChangedUnits}).
+ * </p>
+ * <p>
+ * A check only job does not change any file, it only collects the units
+ * whose members are out of order (see {@link #getViolations()}).
+ * </p>
+ *
+ * @author Benjámin Hajnal <benjamin.hajnal@ixenit.com>
+ *
+ */
+public class SortJob extends WorkspaceJob {
+
+	/**
+	 * Creates the jobs sorting the given elements, one job per project, so
+	 * different projects can be sorted at the same time. The jobs share the
+	 * given number of worker threads and the limit of units in flight.
+	 *
+	 * @param elements
+	 *        projects, source folders, packages or compilation units, none of
+	 *        them contained by an other
+	 * @param ruleSet
+	 *        the rules to sort with, <code>null</code> to sort every project
+	 *        with its own rules (see {@link Activator#getRuleSet(IProject)})
+	 * @param threads
+	 *        the number of worker threads of all the jobs
+	 * @param checkOnly
+	 *        whether the order is only checked instead of sorting the units
+	 * @return the jobs, not scheduled yet
+	 */
+	public static List<SortJob> create(
+		List<IJavaElement> elements, RuleSet ruleSet, int threads, boolean checkOnly) {
+
+		Map<IJavaProject, List<IJavaElement>> elementsByProject = new LinkedHashMap<>();
+
+		for (IJavaElement element : elements) {
+			IJavaProject project = element.getJavaProject();
+
+			List<IJavaElement> projectElements = elementsByProject.get(project);
+
+			if (projectElements == null) {
+				projectElements = new ArrayList<>();
+
+				elementsByProject.put(project, projectElements);
+			}
+
+			projectElements.add(element);
+		}
+
+		int maxInFlight = Activator.getDefault().getPreferenceStore().getInt(PreferenceConstants.P_MAX_IN_FLIGHT);
+
+		SortRun run = new SortRun(threads, maxInFlight);
+
+		List<SortJob> jobs = new ArrayList<>();
+
+		for (Entry<IJavaProject, List<IJavaElement>> entry : elementsByProject.entrySet()) {
+			IJavaProject project = entry.getKey();
+
+			// The rules of a project are resolved once for its whole job
+			RuleSet projectRuleSet = (ruleSet != null) ? ruleSet
+				: Activator.getDefault().getRuleSet(project.getProject());
+
+			jobs.add(new SortJob(project, entry.getValue(), projectRuleSet, run, checkOnly));
+		}
+
+		return jobs;
+	}
+
+	/**
+	 * Returns the number of units which were modified.
+	 *
+	 * @return the number of changed units
+	 */
+	public int getChanged() {
+		return _changed;
+	}
+
+	/**
+	 * Returns the number of units which could not be sorted.
+	 *
+	 * @return the number of failed units
+	 */
+	public int getFailed() {
+		return _failed;
+	}
+
+	/**
+	 * Returns the number of units which were processed before the job ended.
+	 *
+	 * @return the number of scanned units
+	 */
+	public int getScanned() {
+		return _scanned;
+	}
+
+	/**
+	 * Returns the number of units which were skipped, because they were not
+	 * changed since they were sorted.
+	 *
+	 * @return the number of skipped units
+	 */
+	public int getSkipped() {
+		return _skipped;
+	}
+
+	/**
+	 * Returns the units whose members are out of order, with the first out of
+	 * order member of every unsorted type. Only a check only job collects
+	 * them.
+	 *
+	 * @return the violations by unit, in the order the units were checked
+	 */
+	public Map<ICompilationUnit, List<Violation>> getViolations() {
+		return Collections.unmodifiableMap(_violations);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.eclipse.core.resources.WorkspaceJob#runInWorkspace(org.eclipse.core.runtime.IProgressMonitor)
+	 */
+	@Override
+	public IStatus runInWorkspace(IProgressMonitor monitor) throws CoreException {
+
+		// The job is already a workspace operation: the commits are reported
+		// in a single resource change event when it ends, so builders and the
+		// indexer run once instead of per unit
+		return _run(monitor);
+	}
+
+	private void _applyEdits(
+		ICompilationUnit unit, String source, TextEdit edits, SortStatistics statistics, IProgressMonitor monitor)
+		throws CoreException, BadLocationException, MalformedTreeException {
+
+		if (!UnitEdits.apply(unit, source, edits, statistics, monitor)) {
+			throw new IllegalStateException("The unit was changed while it was sorted");
+		}
+	}
+
+	/**
+	 * Tells whether the unit was processed by the interrupted run of the same
+	 * selection and was not changed since.
+	 */
+	private boolean _isJournaled(RunJournal journal, ICompilationUnit unit) {
+		IResource resource = unit.getResource();
+
+		if (journal == null || resource == null) {
+			return false;
+		}
+
+		try {
+			return !unit.hasUnsavedChanges()
+				&& journal.contains(Fingerprints.getPath(unit), resource.getModificationStamp());
+		}
+		catch (JavaModelException e) {
+			return false;
+		}
+	}
+
+	private void _journal(RunJournal journal, ICompilationUnit unit) {
+		IResource resource = unit.getResource();
+
+		if (journal == null || resource == null) {
+			return;
+		}
+
+		try {
+			// Unsaved sorted members are not sorted on the disk
+			if (!unit.hasUnsavedChanges()) {
+				journal.append(Fingerprints.getPath(unit), resource.getModificationStamp());
+			}
+		}
+		catch (JavaModelException e) {
+			// Processed again when resumed
+		}
+	}
+
+	/**
+	 * Keeps the modification stamp of a processed unit which is recorded as
+	 * changed. It is not changed since it was sorted as long as its stamp is
+	 * the same.
+	 */
+	private void _keepStamp(ICompilationUnit unit) {
+		IResource resource = unit.getResource();
+
+		if (_checkOnly || resource == null) {
+			return;
+		}
+
+		IPath path = resource.getFullPath();
+
+		if (Activator.getDefault().getChangedUnits().contains(path)) {
+			_sortedStamps.put(path, resource.getModificationStamp());
+		}
+	}
+
+	/**
+	 * Opens the journal of the selection of the job, named after the hash of
+	 * the selected elements. A concurrent run of the same selection, e.g. a
+	 * manual sort during a sort of the changed files, holds it locked, this
+	 * run goes without a journal then.
+	 */
+	private RunJournal _openJournal(RuleSet ruleSet) {
+		long hash = FingerprintIndex.HASH_SEED;
+
+		for (IJavaElement element : _elements) {
+			byte[] bytes = element.getHandleIdentifier().getBytes(StandardCharsets.UTF_8);
+
+			hash = FingerprintIndex.hash(hash, bytes, bytes.length);
+		}
+
+		File file = Activator.getDefault().getStateLocation().append(_JOURNAL_FOLDER).append(
+			Long.toHexString(hash) + _JOURNAL_EXTENSION).toFile();
+
+		try {
+			return RunJournal.open(file, ruleSet.getFingerprint());
+		}
+		catch (IOException e) {
+			Activator.getDefault().getLog().log(
+				new Status(IStatus.WARNING, Activator.PLUGIN_ID, "Cannot open the journal of the sort run", e));
+
+			return null;
+		}
+	}
+
+	private void _record(FingerprintIndex index, ICompilationUnit unit, long fingerprint) {
+		if (index != null && fingerprint != 0) {
+			index.put(Fingerprints.getPath(unit), fingerprint);
+		}
+	}
+
+	private IStatus _run(IProgressMonitor monitor) {
+		SubMonitor subMonitor = SubMonitor.convert(
+			monitor, _checkOnly ? "Checking member order" : "Sorting members", 1000);
+
+		RuleSet ruleSet = _ruleSet;
+
+		FingerprintIndex index = Activator.getDefault().getFingerprintIndex();
+
+		MultiStatus failures = new MultiStatus(
+			Activator.PLUGIN_ID, IStatus.OK, "Some compilation units could not be sorted", null);
+
+		// Moves only the members out of place, with the project's formatting
+		MemberSorter sorter = null;
+
+		if (!_checkOnly && Activator.getDefault().getPreferenceStore().getBoolean(
+			PreferenceConstants.P_MOVE_OUT_OF_PLACE_ONLY)) {
+
+			sorter = new MemberSorter(ruleSet, _project.getOptions(true));
+		}
+
+		// Instrumenting costs a null check per phase when disabled
+		SortStatistics statistics = Activator.getDefault().getPreferenceStore().getBoolean(
+			PreferenceConstants.P_COLLECT_STATISTICS) ? new SortStatistics(getName()) : null;
+
+		boolean structuralParse = Activator.getDefault().getPreferenceStore().getBoolean(
+			PreferenceConstants.P_STRUCTURAL_PARSE);
+
+		// Lets a cancelled or interrupted run resume where it stopped
+		RunJournal journal = _checkOnly ? null : _openJournal(ruleSet);
+
+		int threads = _sortRun.getThreads();
+
+		// Units handed to the workers but not applied yet, every one holds a
+		// permit of the limit shared by the jobs of the run
+		Semaphore inFlight = _sortRun.getInFlight();
+		int outstanding = 0;
+
+		// Holds at most the outstanding units
+		BlockingQueue<SortResult> results = new LinkedBlockingQueue<>();
+
+		// Every worker gets a batch within the limit
+		int maxBatchSize = Math.max(1, Math.min(_BATCH_SIZE, _sortRun.getMaxInFlight() / threads));
+		int submitted = 0;
+
+		// The units are enumerated lazily, only the outstanding ones are known
+		Iterator<ICompilationUnit> iterator = new UnitIterator(_elements, failures);
+
+		IProgressMonitor parseMonitor = new NullProgressMonitor();
+
+		ExecutorService executor = _sortRun.getExecutor();
+
+		try {
+			while (true) {
+				if (subMonitor.isCanceled()) {
+					parseMonitor.setCanceled(true);
+
+					return Status.CANCEL_STATUS;
+				}
+
+				boolean limited = false;
+
+				while (!limited && iterator.hasNext()) {
+
+					// Batches grow with the run, so small selections still
+					// keep every worker busy
+					int batchSize = Math.max(1, Math.min(maxBatchSize, submitted / threads));
+
+					List<ICompilationUnit> batch = new ArrayList<>(batchSize);
+
+					while (batch.size() < batchSize && iterator.hasNext()) {
+
+						// The limit is reached, possibly by the other jobs
+						if (!inFlight.tryAcquire()) {
+							limited = true;
+
+							break;
+						}
+
+						ICompilationUnit unit = iterator.next();
+
+						// Processed before the run was interrupted
+						if (_isJournaled(journal, unit)) {
+							inFlight.release();
+
+							_skipped++;
+							_scanned++;
+
+							continue;
+						}
+
+						batch.add(unit);
+					}
+
+					if (batch.isEmpty()) {
+						continue;
+					}
+
+					executor.execute(new SortBatchTask(
+						batch, ruleSet, sorter, index, results, parseMonitor, statistics, _checkOnly, structuralParse));
+
+					outstanding += batch.size();
+					submitted += batch.size();
+				}
+
+				if (outstanding == 0 && !iterator.hasNext()) {
+					break;
+				}
+
+				SortResult result = results.poll(100, TimeUnit.MILLISECONDS);
+
+				if (result == null) {
+					continue;
+				}
+
+				outstanding--;
+
+				inFlight.release();
+
+				// The number of units is not known in advance
+				subMonitor.setWorkRemaining(1000);
+
+				subMonitor.subTask(result.unit.getElementName());
+
+				// Edits are applied and committed one by one in the job's thread
+				try {
+					if (result.exception != null) {
+						throw result.exception;
+					}
+
+					if (result.upToDate) {
+						_skipped++;
+
+						subMonitor.worked(1);
+					}
+					else if (result.violations != null) {
+						subMonitor.worked(1);
+
+						if (result.violations.isEmpty()) {
+							_record(index, result.unit, result.fingerprint);
+						}
+						else {
+							_violations.put(result.unit, result.violations);
+						}
+					}
+					else if (result.edits != null) {
+						_applyEdits(result.unit, result.source, result.edits, statistics, subMonitor.newChild(1));
+
+						_changed++;
+
+						_record(index, result.unit, Fingerprints.compute(result.unit, ruleSet));
+					}
+					else {
+						subMonitor.worked(1);
+
+						_record(index, result.unit, result.fingerprint);
+					}
+
+					_journal(journal, result.unit);
+					_keepStamp(result.unit);
+				}
+				catch (Exception e) {
+					_failed++;
+					_failedUnits.add(result.unit);
+
+					failures.add(new Status(
+						IStatus.ERROR, Activator.PLUGIN_ID, result.unit.getPath() + ": " + e.getMessage(), e));
+				}
+
+				_scanned++;
+			}
+
+			// A finished run starts over next time
+			if (journal != null) {
+				journal.delete();
+			}
+
+			// Elements which could not be read keep their changed files
+			_completed = (failures.getChildren().length == _failed);
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+
+			return Status.CANCEL_STATUS;
+		}
+		finally {
+			// The batches of the job still queued are dropped, the workers
+			// are shared with the other jobs of the run
+			parseMonitor.setCanceled(true);
+
+			// The results of a cancelled job are never applied
+			inFlight.release(outstanding);
+
+			if (journal != null) {
+				journal.close();
+			}
+
+			if (statistics != null) {
+				statistics.stop();
+
+				Activator.getDefault().publishStatistics(statistics);
+			}
+		}
+
+		return failures.isOK() ? Status.OK_STATUS : failures;
+	}
+
+	/**
+	 * @param project
+	 *        the project locked by the job
+	 * @param elements
+	 *        the elements of the project to sort
+	 * @param ruleSet
+	 *        the rules to sort with
+	 * @param run
+	 *        the run the job belongs to
+	 * @param checkOnly
+	 *        whether the order is only checked instead of sorting the units
+	 */
+	private SortJob(
+		IJavaProject project, List<IJavaElement> elements, RuleSet ruleSet, SortRun run, boolean checkOnly) {
+
+		super((checkOnly ? "Checking member order of " : "Sorting members of ") + project.getElementName());
+
+		_project = project;
+		_elements = elements;
+		_ruleSet = ruleSet;
+		_sortRun = run;
+		_checkOnly = checkOnly;
+
+		// Units of other projects can be sorted at the same time, checking
+		// changes nothing so it needs no lock
+		if (!checkOnly) {
+			setRule(ResourcesPlugin.getWorkspace().getRuleFactory().modifyRule(project.getProject()));
+		}
+
+		setUser(true);
+
+		// The files are not changed since they were last sorted, once the
+		// changes made by the job are reported
+		if (!checkOnly) {
+			addJobChangeListener(new JobChangeAdapter() {
+
+				@Override
+				public void done(IJobChangeEvent event) {
+					if (_completed) {
+						Activator.getDefault().getChangedUnits().sorted(_sortedStamps, _failedUnits);
+					}
+				}
+
+			});
+		}
+	}
+
+	// The maximum number of units parsed by one ASTParser
+	private static final int _BATCH_SIZE = 64;
+
+	private static final String _JOURNAL_EXTENSION = ".journal";
+
+	private static final String _JOURNAL_FOLDER = "journals";
+
+	private volatile int _changed;
+
+	private volatile boolean _completed;
+
+	private volatile int _failed;
+
+	private volatile int _scanned;
+
+	private volatile int _skipped;
+
+	private final boolean _checkOnly;
+
+	private final List<IJavaElement> _elements;
+
+	private final List<ICompilationUnit> _failedUnits = new ArrayList<>();
+
+	private final IJavaProject _project;
+
+	private final RuleSet _ruleSet;
+
+	private final SortRun _sortRun;
+
+	// The files recorded as changed, by their stamps after they were sorted
+	private final Map<IPath, Long> _sortedStamps = new HashMap<>();
+
+	private final Map<ICompilationUnit, List<Violation>> _violations = new LinkedHashMap<>();
+
+}
@@ -0,0 +1,540 @@
+/*******************************************************************************
+ * Copyright 2015 Ixenit
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *******************************************************************************/
+package com.ixenit.membersort.handlers;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import org.eclipse.core.filebuffers.FileBuffers;
+import org.eclipse.core.filebuffers.IFileBuffer;
+import org.eclipse.core.filebuffers.IFileBufferListener;
+import org.eclipse.core.filebuffers.ITextFileBuffer;
+import org.eclipse.core.filebuffers.ITextFileBufferManager;
+import org.eclipse.core.filebuffers.LocationKind;
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.jdt.core.ElementChangedEvent;
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.IElementChangedListener;
+import org.eclipse.jdt.core.IJavaElement;
+import org.eclipse.jdt.core.IJavaElementDelta;
+import org.eclipse.jdt.core.IMember;
+import org.eclipse.jdt.core.IType;
+import org.eclipse.jdt.core.JavaCore;
+import org.eclipse.jdt.core.JavaModelException;
+import org.eclipse.jdt.core.dom.AST;
+import org.eclipse.jdt.core.dom.ASTNode;
+import org.eclipse.jdt.core.dom.ASTParser;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.jdt.core.util.CompilationUnitSorter;
+import org.eclipse.text.edits.TextEdit;
+
+import com.ixenit.membersort.Activator;
+import com.ixenit.membersort.engine.MemberComparator;
+import com.ixenit.membersort.engine.MemberLists;
+import com.ixenit.membersort.engine.MemberSorter;
+import com.ixenit.membersort.engine.OrderChecker;
+import com.ixenit.membersort.engine.RuleSet;
+import com.ixenit.membersort.preferences.PreferenceConstants;
+
+/**
+ * Sorts the members of Java files after they are saved in an editor, if it
+ * is enabled in the preferences.
+ * <p>
+ * A save is the file buffer of an editor becoming clean without its content
+ * being replaced, i.e. it was committed and not reverted. Files changed
+ * outside an editor, e.g. by a checkout, and buffers committed by sorting
+ * itself are not saves.
+ * </p>
+ * <p>
+ * Saving is never slowed down: a save only queues the unit, the units are
+ * sorted by a background job once no file was saved for a short delay, so
+ * rapid repeated saves are sorted once. The AST the editor's reconciler
+ * already built is reused as long as it belongs to the saved content, a
+ * unit is parsed only without one. Units whose members are already in rank
+ * order are detected with a single pass (see {@link OrderChecker}) and left
+ * alone, edits are only computed when members actually move.
+ * </p>
+ * <p>
+ * The reconcile deltas of a unit tell which types had members added,
+ * removed, renamed, reordered or changed in their modifiers since it was
+ * last sorted. Unless disabled in the preferences only those types are
+ * checked and sorted, with edits limited to their bodies. A unit without
+ * structural changes is not touched at all. Changes in local or anonymous
+ * classes and units saved without reconcile deltas are sorted as a whole.
+ * </p>
+ *
+ * @author Benjámin Hajnal <benjamin.hajnal@ixenit.com>
+ *
+ */
+public class SortOnSave implements IElementChangedListener, IFileBufferListener {
+
+	public SortOnSave() {
+		_job.setSystem(true);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.eclipse.core.filebuffers.IFileBufferListener#bufferContentAboutToBeReplaced(org.eclipse.core.filebuffers.IFileBuffer)
+	 */
+	@Override
+	public void bufferContentAboutToBeReplaced(IFileBuffer buffer) {
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.eclipse.core.filebuffers.IFileBufferListener#bufferContentReplaced(org.eclipse.core.filebuffers.IFileBuffer)
+	 */
+	@Override
+	public void bufferContentReplaced(IFileBuffer buffer) {
+
+		// Reverted or reloaded from the file, the buffer becomes clean
+		// without a save
+		synchronized (_replaced) {
+			_replaced.add(buffer);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.eclipse.core.filebuffers.IFileBufferListener#bufferCreated(org.eclipse.core.filebuffers.IFileBuffer)
+	 */
+	@Override
+	public void bufferCreated(IFileBuffer buffer) {
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.eclipse.core.filebuffers.IFileBufferListener#bufferDisposed(org.eclipse.core.filebuffers.IFileBuffer)
+	 */
+	@Override
+	public void bufferDisposed(IFileBuffer buffer) {
+		synchronized (_replaced) {
+			_replaced.remove(buffer);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.eclipse.core.filebuffers.IFileBufferListener#dirtyStateChanged(org.eclipse.core.filebuffers.IFileBuffer, boolean)
+	 */
+	@Override
+	public void dirtyStateChanged(IFileBuffer buffer, boolean isDirty) {
+		boolean replaced;
+
+		synchronized (_replaced) {
+			replaced = _replaced.remove(buffer);
+		}
+
+		if (isDirty || replaced) {
+			return;
+		}
+
+		// Only editors request the synchronization context of their buffers,
+		// and the changes made by sorting are not saves of the user
+		if (!buffer.isSynchronizationContextRequested() || UnitEdits.isApplying() || !_isEnabled()) {
+			return;
+		}
+
+		IFile file = FileBuffers.getWorkspaceFileAtLocation(buffer.getLocation());
+
+		if (file == null || !"java".equals(file.getFileExtension())) {
+			return;
+		}
+
+		IJavaElement element = JavaCore.create(file);
+
+		if (!(element instanceof ICompilationUnit)) {
+			return;
+		}
+
+		synchronized (_pending) {
+			_pending.add((ICompilationUnit)element);
+		}
+
+		// Every save pushes the run further, so a burst of saves is sorted once
+		_job.schedule(_DELAY);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.eclipse.jdt.core.IElementChangedListener#elementChanged(org.eclipse.jdt.core.ElementChangedEvent)
+	 */
+	@Override
+	public void elementChanged(ElementChangedEvent event) {
+		IJavaElementDelta delta = event.getDelta();
+		IJavaElement element = delta.getElement();
+
+		if (!(element instanceof ICompilationUnit) || !_isEnabled()) {
+			return;
+		}
+
+		ICompilationUnit unit = ((ICompilationUnit)element).getPrimary();
+
+		Set<String> changedTypes = new HashSet<>();
+
+		_collectChangedTypes(delta, changedTypes);
+
+		synchronized (_changedTypes) {
+			Set<String> types = _changedTypes.get(unit);
+
+			if (types == null) {
+				types = new HashSet<>();
+
+				_changedTypes.put(unit, types);
+			}
+
+			types.addAll(changedTypes);
+		}
+
+		CompilationUnit ast = delta.getCompilationUnitAST();
+
+		if (ast == null) {
+			return;
+		}
+
+		try {
+			String source = ((ICompilationUnit)element).getSource();
+
+			if (source == null) {
+				return;
+			}
+
+			synchronized (_asts) {
+				_asts.put(unit, new ReconciledAst(ast, source));
+			}
+		}
+		catch (JavaModelException e) {
+			// The unit will be parsed if it is saved
+		}
+	}
+
+	/**
+	 * Starts listening to saves and reconciles.
+	 */
+	public void install() {
+		JavaCore.addElementChangedListener(this, ElementChangedEvent.POST_RECONCILE);
+		FileBuffers.getTextFileBufferManager().addFileBufferListener(this);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.eclipse.core.filebuffers.IFileBufferListener#stateChangeFailed(org.eclipse.core.filebuffers.IFileBuffer)
+	 */
+	@Override
+	public void stateChangeFailed(IFileBuffer buffer) {
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.eclipse.core.filebuffers.IFileBufferListener#stateChanging(org.eclipse.core.filebuffers.IFileBuffer)
+	 */
+	@Override
+	public void stateChanging(IFileBuffer buffer) {
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.eclipse.core.filebuffers.IFileBufferListener#stateValidationChanged(org.eclipse.core.filebuffers.IFileBuffer, boolean)
+	 */
+	@Override
+	public void stateValidationChanged(IFileBuffer buffer, boolean isStateValidated) {
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.eclipse.core.filebuffers.IFileBufferListener#underlyingFileDeleted(org.eclipse.core.filebuffers.IFileBuffer)
+	 */
+	@Override
+	public void underlyingFileDeleted(IFileBuffer buffer) {
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.eclipse.core.filebuffers.IFileBufferListener#underlyingFileMoved(org.eclipse.core.filebuffers.IFileBuffer, org.eclipse.core.runtime.IPath)
+	 */
+	@Override
+	public void underlyingFileMoved(IFileBuffer buffer, IPath path) {
+	}
+
+	/**
+	 * Stops listening and drops the queued units.
+	 */
+	public void uninstall() {
+		FileBuffers.getTextFileBufferManager().removeFileBufferListener(this);
+		JavaCore.removeElementChangedListener(this);
+
+		_job.cancel();
+
+		synchronized (_pending) {
+			_pending.clear();
+		}
+
+		synchronized (_asts) {
+			_asts.clear();
+		}
+
+		synchronized (_changedTypes) {
+			_changedTypes.clear();
+		}
+
+		synchronized (_replaced) {
+			_replaced.clear();
+		}
+	}
+
+	private void _addChangedType(IType type, Set<String> types) {
+		if (type == null) {
+			types.add(MemberLists.TOP_LEVEL);
+		}
+		else if (_isFoundByName(type)) {
+			types.add(type.getTypeQualifiedName('.'));
+		}
+		else {
+
+			// Local and anonymous classes, and the types nested in them,
+			// cannot be found by name
+			types.add(_ALL_TYPES);
+		}
+	}
+
+	private void _collectChangedTypes(IJavaElementDelta delta, Set<String> types) {
+		IJavaElement element = delta.getElement();
+
+		// Members changing their rank: added, removed (a rename is both),
+		// moved or with new modifiers. Changed bodies do not count.
+		if (element instanceof IMember && (delta.getKind() != IJavaElementDelta.CHANGED
+			|| (delta.getFlags() & (IJavaElementDelta.F_MODIFIERS | IJavaElementDelta.F_REORDER)) != 0)) {
+
+			_addChangedType(((IMember)element).getDeclaringType(), types);
+
+			// The members of a new type are not sorted yet
+			if (element instanceof IType && delta.getKind() == IJavaElementDelta.ADDED) {
+				_addChangedType((IType)element, types);
+			}
+		}
+
+		for (IJavaElementDelta child : delta.getAffectedChildren()) {
+			_collectChangedTypes(child, types);
+		}
+	}
+
+	private CompilationUnit _getAst(ICompilationUnit unit, String source) {
+		ReconciledAst reconciled;
+
+		synchronized (_asts) {
+			reconciled = _asts.get(unit);
+		}
+
+		if (reconciled != null && reconciled.matches(source)) {
+			return reconciled.ast;
+		}
+
+		ASTParser parser = ASTParser.newParser(AST.JLS8);
+
+		parser.setKind(ASTParser.K_COMPILATION_UNIT);
+		parser.setSource(unit);
+
+		return (CompilationUnit)parser.createAST(null);
+	}
+
+	private boolean _isEnabled() {
+		Activator activator = Activator.getDefault();
+
+		return (activator != null) && activator.getPreferenceStore().getBoolean(PreferenceConstants.P_SORT_ON_SAVE);
+	}
+
+	/**
+	 * Tells whether the given type is a top level type or nested in member
+	 * types only, so {@link MemberLists#find} finds it by the name built by
+	 * {@link IType#getTypeQualifiedName(char)}.
+	 */
+	private static boolean _isFoundByName(IType type) {
+		IJavaElement element = type;
+
+		while (element instanceof IType) {
+			element = element.getParent();
+		}
+
+		return element instanceof ICompilationUnit;
+	}
+
+	private IStatus _run(IProgressMonitor monitor) {
+		List<ICompilationUnit> units;
+
+		synchronized (_pending) {
+			units = new ArrayList<>(_pending);
+
+			_pending.clear();
+		}
+
+		boolean changedTypesOnly = Activator.getDefault().getPreferenceStore().getBoolean(
+			PreferenceConstants.P_SORT_CHANGED_TYPES_ONLY);
+
+		boolean moveOutOfPlaceOnly = Activator.getDefault().getPreferenceStore().getBoolean(
+			PreferenceConstants.P_MOVE_OUT_OF_PLACE_ONLY);
+
+		ITextFileBufferManager bufferManager = FileBuffers.getTextFileBufferManager();
+
+		for (ICompilationUnit unit : units) {
+			if (monitor.isCanceled()) {
+				return Status.CANCEL_STATUS;
+			}
+
+			if (!unit.exists() || !(unit.getResource() instanceof IFile)) {
+				continue;
+			}
+
+			ITextFileBuffer buffer = bufferManager.getTextFileBuffer(
+				unit.getResource().getFullPath(), LocationKind.IFILE);
+
+			// Changed again since the save, the next save sorts it
+			if (buffer != null && buffer.isDirty()) {
+				continue;
+			}
+
+			// Resolved once per project and cached
+			RuleSet ruleSet = Activator.getDefault().getRuleSet(unit.getResource().getProject());
+
+			Set<String> changedTypes = _takeChangedTypes(unit);
+
+			boolean incremental = changedTypesOnly && changedTypes != null && !changedTypes.contains(_ALL_TYPES);
+
+			// No member was added, removed or changed since the last sort
+			if (incremental && changedTypes.isEmpty()) {
+				continue;
+			}
+
+			try {
+				String source = (buffer != null) ? buffer.getDocument().get() : unit.getSource();
+
+				CompilationUnit ast = _getAst(unit, source);
+
+				Collection<ASTNode> containers = incremental ? MemberLists.find(ast, changedTypes)
+					: MemberLists.collect(ast);
+
+				if (new OrderChecker(ruleSet).check(ast, containers).isEmpty()) {
+					continue;
+				}
+
+				TextEdit edits;
+
+				if (incremental || moveOutOfPlaceOnly) {
+
+					// Only the members out of place are moved, and only in the
+					// bodies of the changed types if incremental
+					MemberSorter sorter = new MemberSorter(ruleSet, unit.getJavaProject().getOptions(true));
+
+					edits = sorter.computeEdits(ast, source, containers);
+				}
+				else {
+					MemberComparator comparator = new MemberComparator(ruleSet);
+					comparator.computeKeys(ast);
+
+					edits = CompilationUnitSorter.sort(ast, comparator, 0, null, null);
+				}
+
+				// Edited again since, the next save sorts it
+				if (edits != null) {
+					UnitEdits.apply(unit, source, edits, null, null);
+				}
+			}
+			catch (IllegalArgumentException e) {
+				// Saved with syntax errors, a save after fixing them sorts it
+			}
+			catch (Exception e) {
+				Activator.getDefault().getLog().log(new Status(
+					IStatus.WARNING, Activator.PLUGIN_ID, unit.getPath() + " could not be sorted on save", e));
+			}
+		}
+
+		return Status.OK_STATUS;
+	}
+
+	/**
+	 * Returns and forgets the types changed in the given unit since it was
+	 * last sorted.
+	 *
+	 * @return the names of the types or <code>null</code> if the unit was not
+	 *         reconciled since
+	 */
+	private Set<String> _takeChangedTypes(ICompilationUnit unit) {
+		synchronized (_changedTypes) {
+			return _changedTypes.remove(unit);
+		}
+	}
+
+	// Marks a unit which has to be sorted as a whole
+	private static final String _ALL_TYPES = "*";
+
+	// The quiet time after the last save before sorting
+	private static final long _DELAY = 500;
+
+	// The number of reconciled ASTs kept, only the recently edited units are
+	// likely to be saved
+	private static final int _MAX_ASTS = 8;
+
+	private final Map<ICompilationUnit, ReconciledAst> _asts = new LinkedHashMap<ICompilationUnit, ReconciledAst>(
+		16, 0.75f, true) {
+
+		@Override
+		protected boolean removeEldestEntry(Entry<ICompilationUnit, ReconciledAst> eldest) {
+			return size() > _MAX_ASTS;
+		}
+
+	};
+
+	private final Map<ICompilationUnit, Set<String>> _changedTypes = new HashMap<>();
+
+	private final Job _job = new Job("Sorting members on save") {
+
+		@Override
+		protected IStatus run(IProgressMonitor monitor) {
+			return _run(monitor);
+		}
+
+	};
+
+	private final Set<ICompilationUnit> _pending = new LinkedHashSet<>();
+
+	// The buffers whose content was replaced since they last changed their
+	// dirty state
+	private final Set<IFileBuffer> _replaced = new HashSet<>();
+
+}
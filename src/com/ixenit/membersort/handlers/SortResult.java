@@ -0,0 +1,110 @@
+/*******************************************************************************
+ * Copyright 2015 Ixenit
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *******************************************************************************/
+package com.ixenit.membersort.handlers;
+
+import java.util.List;
+
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.text.edits.TextEdit;
+
+import com.ixenit.membersort.engine.Violation;
+
+/**
+ * The outcome of sorting a single unit: the edits to apply, or the reason
+ * why the unit could not be sorted.
+ *
+ * @author Benjámin Hajnal <benjamin.hajnal@ixenit.com>
+ *
+ */
+final class SortResult {
+
+	/**
+	 * The order of the unit was checked, the violations are empty if it is
+	 * sorted.
+	 */
+	static SortResult checked(ICompilationUnit unit, List<Violation> violations, long fingerprint) {
+		return new SortResult(unit, null, null, violations, null, fingerprint, false);
+	}
+
+	/**
+	 * The unit could not be sorted.
+	 */
+	static SortResult failed(ICompilationUnit unit, Exception exception) {
+		return new SortResult(unit, null, null, null, exception, 0, false);
+	}
+
+	/**
+	 * The unit was parsed and sorted, the edits are <code>null</code> if it
+	 * was already sorted.
+	 */
+	static SortResult sorted(ICompilationUnit unit, String source, TextEdit edits, long fingerprint) {
+		return new SortResult(unit, source, edits, null, null, fingerprint, false);
+	}
+
+	/**
+	 * The unit is recorded as sorted in the index, it was not parsed.
+	 */
+	static SortResult upToDate(ICompilationUnit unit) {
+		return new SortResult(unit, null, null, null, null, 0, true);
+	}
+
+	private SortResult(
+		ICompilationUnit unit, String source, TextEdit edits, List<Violation> violations, Exception exception,
+		long fingerprint, boolean upToDate) {
+
+		this.unit = unit;
+		this.source = source;
+		this.edits = edits;
+		this.violations = violations;
+		this.exception = exception;
+		this.fingerprint = fingerprint;
+		this.upToDate = upToDate;
+	}
+
+	/**
+	 * The edits sorting the unit, <code>null</code> if it is already sorted
+	 * or it could not be sorted.
+	 */
+	final TextEdit edits;
+
+	/**
+	 * The reason why the unit could not be sorted, <code>null</code> on
+	 * success.
+	 */
+	final Exception exception;
+
+	/**
+	 * The fingerprint of the unit before sorting, 0 if it is not known.
+	 */
+	final long fingerprint;
+
+	/**
+	 * The content the edits were computed for, <code>null</code> without
+	 * edits.
+	 */
+	final String source;
+
+	final ICompilationUnit unit;
+
+	final boolean upToDate;
+
+	/**
+	 * The first out of order member of every unsorted type, <code>null</code>
+	 * if the unit was not checked.
+	 */
+	final List<Violation> violations;
+
+}
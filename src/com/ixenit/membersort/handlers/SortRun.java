@@ -0,0 +1,122 @@
+/*******************************************************************************
+ * Copyright 2015 Ixenit
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *******************************************************************************/
+package com.ixenit.membersort.handlers;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The worker threads and the limit of units in flight shared by the
+ * {@link SortJob}s of a single sort run, so the configured numbers are the
+ * limits of the whole run, however many projects it covers.
+ * <p>
+ * The threads stop when they are idle, the pool needs no shutdown when the
+ * jobs end or are cancelled.
+ * </p>
+ *
+ * @author Benjámin Hajnal <benjamin.hajnal@ixenit.com>
+ *
+ */
+final class SortRun {
+
+	/**
+	 * @param threads
+	 *        the number of worker threads of the run
+	 * @param maxInFlight
+	 *        the number of units of the run handed to the workers but not
+	 *        applied yet
+	 */
+	SortRun(int threads, int maxInFlight) {
+		_threads = Math.max(1, threads);
+		_maxInFlight = Math.max(1, maxInFlight);
+		_inFlight = new Semaphore(_maxInFlight);
+
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(
+			_threads, _threads, _KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+			_THREAD_FACTORY);
+
+		executor.allowCoreThreadTimeOut(true);
+
+		_executor = executor;
+	}
+
+	/**
+	 * Returns the executor running the {@link SortBatchTask}s of every job of
+	 * the run.
+	 *
+	 * @return the shared executor
+	 */
+	ExecutorService getExecutor() {
+		return _executor;
+	}
+
+	/**
+	 * Returns the permits of the units in flight. A job acquires one before
+	 * handing a unit to the workers and releases it when the result of the
+	 * unit is applied, or when the job ends.
+	 *
+	 * @return the shared permits
+	 */
+	Semaphore getInFlight() {
+		return _inFlight;
+	}
+
+	/**
+	 * Returns the maximum number of units of the run in flight.
+	 *
+	 * @return the number of permits, at least one
+	 */
+	int getMaxInFlight() {
+		return _maxInFlight;
+	}
+
+	/**
+	 * Returns the number of worker threads of the run.
+	 *
+	 * @return the number of threads, at least one
+	 */
+	int getThreads() {
+		return _threads;
+	}
+
+	private static final long _KEEP_ALIVE_SECONDS = 5;
+
+	private static final ThreadFactory _THREAD_FACTORY = new ThreadFactory() {
+
+		@Override
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, "MemberSort worker");
+
+			thread.setDaemon(true);
+
+			return thread;
+		}
+
+	};
+
+	private final ExecutorService _executor;
+
+	private final Semaphore _inFlight;
+
+	private final int _maxInFlight;
+
+	private final int _threads;
+
+}
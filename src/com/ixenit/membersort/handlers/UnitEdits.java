@@ -0,0 +1,193 @@
+/*******************************************************************************
+ * Copyright 2015 Ixenit
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *******************************************************************************/
+package com.ixenit.membersort.handlers;
+
+import org.eclipse.core.filebuffers.FileBuffers;
+import org.eclipse.core.filebuffers.ITextFileBuffer;
+import org.eclipse.core.filebuffers.ITextFileBufferManager;
+import org.eclipse.core.filebuffers.LocationKind;
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.SubMonitor;
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.text.edits.MalformedTreeException;
+import org.eclipse.text.edits.TextEdit;
+
+import com.ixenit.membersort.statistics.PerformanceEvents;
+import com.ixenit.membersort.statistics.SortStatistics;
+import com.ixenit.membersort.statistics.SortStatistics.Phase;
+
+/**
+ * Applies sorting edits to the file buffer of a unit.
+ * <p>
+ * The buffer is shared with the editor of the file if it is open, so the
+ * editor shows the sorted members at once. A buffer without unsaved changes
+ * is saved after the edits, unsaved changes of an editor stay unsaved. The
+ * buffer is released when the edits are applied, nothing is kept per unit.
+ * </p>
+ *
+ * @author Benjámin Hajnal <benjamin.hajnal@ixenit.com>
+ *
+ */
+class UnitEdits {
+
+	/**
+	 * Applies the given edits to the unit, if its content is still the one
+	 * they were computed for.
+	 *
+	 * @param unit
+	 *        the unit, a file in the workspace
+	 * @param source
+	 *        the content the edits were computed for
+	 * @param edits
+	 *        the edits
+	 * @param statistics
+	 *        the statistics timing applying and committing, may be
+	 *        <code>null</code>
+	 * @param monitor
+	 *        the progress monitor, may be <code>null</code>
+	 * @return <code>false</code> if the content was changed since and nothing
+	 *         was applied
+	 */
+	static boolean apply(
+		ICompilationUnit unit, final String source, final TextEdit edits, SortStatistics statistics,
+		IProgressMonitor monitor) throws CoreException, BadLocationException, MalformedTreeException {
+
+		IResource resource = unit.getResource();
+
+		if (!(resource instanceof IFile)) {
+			throw new IllegalArgumentException(unit.getPath() + " is not a file in the workspace");
+		}
+
+		SubMonitor subMonitor = SubMonitor.convert(monitor, 3);
+
+		ITextFileBufferManager manager = FileBuffers.getTextFileBufferManager();
+
+		IPath path = resource.getFullPath();
+
+		manager.connect(path, LocationKind.IFILE, subMonitor.newChild(1));
+
+		_applying.set(Boolean.TRUE);
+
+		try {
+			ITextFileBuffer buffer = manager.getTextFileBuffer(path, LocationKind.IFILE);
+
+			boolean dirty = buffer.isDirty();
+
+			final IDocument document = buffer.getDocument();
+			final Exception[] failure = new Exception[1];
+			final boolean[] applied = new boolean[1];
+
+			Runnable runnable = new Runnable() {
+
+				@Override
+				public void run() {
+					if (!source.equals(document.get())) {
+						return;
+					}
+
+					try {
+						edits.apply(document, TextEdit.NONE);
+
+						applied[0] = true;
+					}
+					catch (BadLocationException | MalformedTreeException e) {
+						failure[0] = e;
+					}
+				}
+
+			};
+
+			long start = System.nanoTime();
+
+			PerformanceEvents.begin(Phase.APPLY);
+
+			// The document of an open editor is changed in the UI thread
+			if (buffer.isSynchronizationContextRequested()) {
+				manager.execute(runnable);
+			}
+			else {
+				runnable.run();
+			}
+
+			long elapsed = System.nanoTime() - start;
+
+			if (statistics != null) {
+				statistics.addTime(Phase.APPLY, elapsed);
+			}
+
+			PerformanceEvents.record(Phase.APPLY, elapsed, unit, -1, -1);
+
+			if (failure[0] instanceof BadLocationException) {
+				throw (BadLocationException)failure[0];
+			}
+
+			if (failure[0] != null) {
+				throw (MalformedTreeException)failure[0];
+			}
+
+			if (!applied[0]) {
+				return false;
+			}
+
+			// Sorting does not save the unsaved changes of an editor
+			if (!dirty) {
+				start = System.nanoTime();
+
+				PerformanceEvents.begin(Phase.COMMIT);
+
+				buffer.commit(subMonitor.newChild(1), false);
+
+				elapsed = System.nanoTime() - start;
+
+				if (statistics != null) {
+					statistics.addTime(Phase.COMMIT, elapsed);
+				}
+
+				PerformanceEvents.record(Phase.COMMIT, elapsed, unit, -1, -1);
+			}
+
+			return true;
+		}
+		finally {
+			_applying.remove();
+
+			manager.disconnect(path, LocationKind.IFILE, subMonitor.newChild(1));
+		}
+	}
+
+	/**
+	 * Tells whether the current thread is applying edits, e.g. a buffer
+	 * committed now is saved by sorting and not by the user.
+	 *
+	 * @return <code>true</code> if called from {@link #apply}
+	 */
+	static boolean isApplying() {
+		return _applying.get() != null;
+	}
+
+	private UnitEdits() {
+		// Only static methods
+	}
+
+	private static final ThreadLocal<Boolean> _applying = new ThreadLocal<>();
+
+}
@@ -0,0 +1,201 @@
+/*******************************************************************************
+ * Copyright 2015 Ixenit
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *******************************************************************************/
+package com.ixenit.membersort.handlers;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.MultiStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.jdt.core.IClasspathAttribute;
+import org.eclipse.jdt.core.IClasspathEntry;
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.IJavaElement;
+import org.eclipse.jdt.core.IJavaProject;
+import org.eclipse.jdt.core.IPackageFragment;
+import org.eclipse.jdt.core.IPackageFragmentRoot;
+import org.eclipse.jdt.core.JavaModelException;
+
+import com.ixenit.membersort.Activator;
+
+/**
+ * Enumerates the compilation units below the given Java elements lazily.
+ * <p>
+ * Containers are only opened when the iteration reaches them, so at most the
+ * units of one package are held at a time. Binary, external and generated
+ * (derived or marked to ignore optional problems) source folders are
+ * skipped. Elements which cannot be read are reported to the given status
+ * and skipped.
+ * </p>
+ *
+ * @author Benjámin Hajnal <benjamin.hajnal@ixenit.com>
+ *
+ */
+class UnitIterator implements Iterator<ICompilationUnit> {
+
+	@Override
+	public boolean hasNext() {
+		_advance();
+
+		return _next != null;
+	}
+
+	@Override
+	public ICompilationUnit next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+
+		ICompilationUnit next = _next;
+
+		_next = null;
+
+		return next;
+	}
+
+	@Override
+	public void remove() {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * @param elements
+	 *        projects, source folders, packages or compilation units, none of
+	 *        them contained by an other
+	 * @param errors
+	 *        the status collecting the elements which could not be read
+	 */
+	UnitIterator(List<? extends IJavaElement> elements, MultiStatus errors) {
+		_containers.addAll(elements);
+		_errors = errors;
+	}
+
+	private static boolean _isGenerated(IPackageFragmentRoot root) throws JavaModelException {
+		IResource resource = root.getResource();
+
+		if (resource != null && resource.isDerived(IResource.CHECK_ANCESTORS)) {
+			return true;
+		}
+
+		IClasspathEntry entry = root.getRawClasspathEntry();
+
+		if (entry == null) {
+			return false;
+		}
+
+		for (IClasspathAttribute attribute : entry.getExtraAttributes()) {
+			if (IClasspathAttribute.IGNORE_OPTIONAL_PROBLEMS.equals(attribute.getName())
+				&& Boolean.parseBoolean(attribute.getValue())) {
+
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	private static boolean _isSortable(IPackageFragmentRoot root) throws JavaModelException {
+		return root.getKind() == IPackageFragmentRoot.K_SOURCE && !root.isArchive() && !root.isExternal()
+			&& !_isGenerated(root);
+	}
+
+	private void _advance() {
+		while (_next == null) {
+
+			// Continue with the units of the current package
+			if (_units != null && _index < _units.length) {
+				ICompilationUnit unit = _units[_index++];
+
+				IResource resource = unit.getResource();
+
+				if (resource == null || !resource.isDerived()) {
+					_next = unit;
+				}
+
+				continue;
+			}
+
+			_units = null;
+
+			IJavaElement container = _containers.poll();
+
+			if (container == null) {
+				return;
+			}
+
+			try {
+				_expand(container);
+			}
+			catch (JavaModelException e) {
+				_errors.add(new Status(
+					IStatus.ERROR, Activator.PLUGIN_ID, container.getElementName() + ": " + e.getMessage(), e));
+			}
+		}
+	}
+
+	private void _expand(IJavaElement element) throws JavaModelException {
+		switch (element.getElementType()) {
+			case IJavaElement.COMPILATION_UNIT:
+				_next = (ICompilationUnit)element;
+				break;
+
+			case IJavaElement.PACKAGE_FRAGMENT:
+				_units = ((IPackageFragment)element).getCompilationUnits();
+				_index = 0;
+				break;
+
+			case IJavaElement.PACKAGE_FRAGMENT_ROOT:
+				IPackageFragmentRoot root = (IPackageFragmentRoot)element;
+
+				if (_isSortable(root)) {
+					_pushAll(root.getChildren());
+				}
+
+				break;
+
+			case IJavaElement.JAVA_PROJECT:
+				_pushAll(((IJavaProject)element).getPackageFragmentRoots());
+				break;
+
+			default:
+				break;
+		}
+	}
+
+	private void _pushAll(IJavaElement[] elements) {
+
+		// Pushed in reverse order, so they are visited in their original order
+		for (int i = elements.length - 1; i >= 0; i--) {
+			_containers.push(elements[i]);
+		}
+	}
+
+	private int _index;
+
+	private ICompilationUnit _next;
+
+	private ICompilationUnit[] _units;
+
+	private final Deque<IJavaElement> _containers = new ArrayDeque<>();
+
+	private final MultiStatus _errors;
+
+}
@@ -0,0 +1,343 @@
+/*******************************************************************************
+ * Copyright 2015 Ixenit
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *******************************************************************************/
+package com.ixenit.membersort.headless;
+
+import java.io.ByteArrayInputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IFolder;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IProjectDescription;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IResourceChangeEvent;
+import org.eclipse.core.resources.IResourceChangeListener;
+import org.eclipse.core.resources.IResourceDelta;
+import org.eclipse.core.resources.IResourceDeltaVisitor;
+import org.eclipse.core.resources.IWorkspace;
+import org.eclipse.core.resources.IWorkspaceDescription;
+import org.eclipse.core.resources.IWorkspaceRunnable;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.Path;
+import org.eclipse.equinox.app.IApplication;
+import org.eclipse.equinox.app.IApplicationContext;
+import org.eclipse.jdt.core.IClasspathEntry;
+import org.eclipse.jdt.core.IJavaElement;
+import org.eclipse.jdt.core.IJavaProject;
+import org.eclipse.jdt.core.JavaCore;
+
+import com.ixenit.membersort.Activator;
+import com.ixenit.membersort.handlers.SortJob;
+import com.ixenit.membersort.index.FingerprintIndex;
+
+/**
+ * Measures the throughput of sorting a large generated workspace end to
+ * end: enumerating the units, parsing, sorting, applying and committing the
+ * edits, with the same {@link SortJob}s the toolbar command schedules.
+ *
+ * <pre>
+ * eclipse -nosplash -data &lt;workspace&gt; -application MemberSort.benchmarkApplication
+ *     [-projects &lt;count&gt;] [-files &lt;count per project&gt;] [-members &lt;count per file&gt;]
+ *     [-threads &lt;count&gt;]
+ * </pre>
+ * <p>
+ * The projects are generated by {@link SourceGenerator} with fixed seeds, and
+ * replaced on every run, so two runs sort the same files. The fingerprint
+ * index is cleared before sorting. Nothing is downloaded, the projects have
+ * no build path besides their source folder.
+ * </p>
+ * <p>
+ * The wall time, the files per second, the peak heap usage and the number
+ * of resource change events fired while sorting are printed.
+ * </p>
+ *
+ * @author Benjámin Hajnal <benjamin.hajnal@ixenit.com>
+ *
+ */
+public class BenchmarkApplication implements IApplication {
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.eclipse.equinox.app.IApplication#start(org.eclipse.equinox.app.IApplicationContext)
+	 */
+	@Override
+	public Object start(IApplicationContext context) throws Exception {
+		String[] args = (String[])context.getArguments().get(IApplicationContext.APPLICATION_ARGS);
+
+		int projects = 4;
+		int files = 1000;
+		int members = 40;
+		int threads = Runtime.getRuntime().availableProcessors();
+
+		for (int i = 0; i < args.length; i++) {
+			if ("-projects".equals(args[i]) && i + 1 < args.length) {
+				projects = Integer.parseInt(args[++i]);
+			}
+			else if ("-files".equals(args[i]) && i + 1 < args.length) {
+				files = Integer.parseInt(args[++i]);
+			}
+			else if ("-members".equals(args[i]) && i + 1 < args.length) {
+				members = Integer.parseInt(args[++i]);
+			}
+			else if ("-threads".equals(args[i]) && i + 1 < args.length) {
+				threads = Integer.parseInt(args[++i]);
+			}
+			else {
+				System.err.println("Unknown option: " + args[i]);
+
+				return _EXIT_USAGE;
+			}
+		}
+
+		IWorkspace workspace = ResourcesPlugin.getWorkspace();
+
+		// Building would fire its own events and compete for the CPU
+		IWorkspaceDescription description = workspace.getDescription();
+		boolean autoBuilding = description.isAutoBuilding();
+
+		description.setAutoBuilding(false);
+		workspace.setDescription(description);
+
+		try {
+			long start = System.nanoTime();
+
+			List<IJavaElement> elements = _generate(workspace, projects, files, members);
+
+			System.out.println(String.format(
+				Locale.ROOT, "Generated %d files in %.2f s", projects * files, (System.nanoTime() - start) / 1e9));
+
+			return _sort(workspace, elements, threads);
+		}
+		finally {
+			description.setAutoBuilding(autoBuilding);
+			workspace.setDescription(description);
+
+			workspace.save(true, null);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.eclipse.equinox.app.IApplication#stop()
+	 */
+	@Override
+	public void stop() {
+	}
+
+	private void _create(IFolder folder) throws CoreException {
+		if (folder.exists()) {
+			return;
+		}
+
+		if (folder.getParent() instanceof IFolder) {
+			_create((IFolder)folder.getParent());
+		}
+
+		folder.create(true, true, null);
+	}
+
+	private List<IJavaElement> _generate(IWorkspace workspace, final int projects, final int files, final int members)
+		throws CoreException {
+
+		final List<IJavaElement> elements = new ArrayList<>();
+
+		// A single resource change event for the whole generation
+		workspace.run(new IWorkspaceRunnable() {
+
+			@Override
+			public void run(IProgressMonitor monitor) throws CoreException {
+				for (int p = 0; p < projects; p++) {
+					elements.add(_generateProject(p, files, members));
+				}
+			}
+
+		}, null);
+
+		return elements;
+	}
+
+	private IJavaProject _generateProject(int p, int files, int members) throws CoreException {
+		IWorkspace workspace = ResourcesPlugin.getWorkspace();
+
+		IProject project = workspace.getRoot().getProject(_PROJECT_PREFIX + p);
+
+		if (project.exists()) {
+			project.delete(true, true, null);
+		}
+
+		IProjectDescription description = workspace.newProjectDescription(project.getName());
+		description.setNatureIds(new String[] { JavaCore.NATURE_ID });
+
+		project.create(description, null);
+		project.open(null);
+
+		IFolder src = project.getFolder("src");
+
+		_create(src);
+
+		IJavaProject javaProject = JavaCore.create(project);
+
+		javaProject.setRawClasspath(
+			new IClasspathEntry[] { JavaCore.newSourceEntry(src.getFullPath()) }, project.getFullPath().append("bin"),
+			null);
+
+		for (int f = 0; f < files; f++) {
+			String packageName = "com.example.p" + p + ".pkg" + (f / _FILES_PER_PACKAGE);
+			String className = "Generated" + f;
+
+			IFolder folder = src.getFolder(new Path(packageName.replace('.', '/')));
+
+			_create(folder);
+
+			String source = SourceGenerator.generate(packageName, className, members, p * 1000003L + f);
+
+			IFile file = folder.getFile(className + ".java");
+
+			file.create(new ByteArrayInputStream(source.getBytes(StandardCharsets.UTF_8)), true, null);
+			file.setCharset(StandardCharsets.UTF_8.name(), null);
+		}
+
+		return javaProject;
+	}
+
+	private long _getPeakHeap() {
+		long peak = 0;
+
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() == MemoryType.HEAP) {
+				peak += pool.getPeakUsage().getUsed();
+			}
+		}
+
+		return peak;
+	}
+
+	private void _resetPeakHeap() {
+		System.gc();
+
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() == MemoryType.HEAP) {
+				pool.resetPeakUsage();
+			}
+		}
+	}
+
+	private Integer _sort(IWorkspace workspace, List<IJavaElement> elements, int threads) {
+		FingerprintIndex index = Activator.getDefault().getFingerprintIndex();
+
+		// Every run has to sort every file
+		if (index != null) {
+			index.clear();
+		}
+
+		final AtomicInteger events = new AtomicInteger();
+		final AtomicInteger fileDeltas = new AtomicInteger();
+
+		IResourceChangeListener listener = new IResourceChangeListener() {
+
+			@Override
+			public void resourceChanged(IResourceChangeEvent event) {
+				events.incrementAndGet();
+
+				try {
+					event.getDelta().accept(new IResourceDeltaVisitor() {
+
+						@Override
+						public boolean visit(IResourceDelta delta) {
+							if (delta.getResource().getType() == IResource.FILE) {
+								fileDeltas.incrementAndGet();
+							}
+
+							return true;
+						}
+
+					});
+				}
+				catch (CoreException e) {
+					// Only counted
+				}
+			}
+
+		};
+
+		_resetPeakHeap();
+
+		workspace.addResourceChangeListener(listener, IResourceChangeEvent.POST_CHANGE);
+
+		long start = System.nanoTime();
+
+		List<SortJob> jobs = SortJob.create(elements, Activator.getDefault().getRuleSet(), threads, false);
+
+		int scanned = 0;
+		int changed = 0;
+		int failed = 0;
+
+		try {
+			for (SortJob job : jobs) {
+				job.schedule();
+			}
+
+			for (SortJob job : jobs) {
+				job.join();
+
+				scanned += job.getScanned();
+				changed += job.getChanged();
+				failed += job.getFailed();
+			}
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+
+			return _EXIT_FAILED;
+		}
+		finally {
+			workspace.removeResourceChangeListener(listener);
+		}
+
+		double seconds = (System.nanoTime() - start) / 1e9;
+
+		System.out.println(String.format(
+			Locale.ROOT, "Sorted %d files in %.2f s (%.1f files/s), changed: %d, failed: %d", scanned, seconds,
+			(seconds > 0) ? scanned / seconds : 0, changed, failed));
+
+		System.out.println(String.format(Locale.ROOT, "Peak heap: %.1f MB", _getPeakHeap() / (1024.0 * 1024.0)));
+
+		System.out.println(String.format(
+			Locale.ROOT, "Resource change events: %d (%d file deltas)", events.get(), fileDeltas.get()));
+
+		return (failed == 0) ? IApplication.EXIT_OK : _EXIT_FAILED;
+	}
+
+	private static final Integer _EXIT_FAILED = 1;
+
+	private static final Integer _EXIT_USAGE = 2;
+
+	private static final int _FILES_PER_PACKAGE = 50;
+
+	private static final String _PROJECT_PREFIX = "membersort-bench-";
+
+}
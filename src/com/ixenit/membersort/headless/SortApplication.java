@@ -0,0 +1,316 @@
+/*******************************************************************************
+ * Copyright 2015 Ixenit
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *******************************************************************************/
+package com.ixenit.membersort.headless;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map.Entry;
+import java.util.Properties;
+
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IProjectDescription;
+import org.eclipse.core.resources.IWorkspace;
+import org.eclipse.core.resources.IWorkspaceDescription;
+import org.eclipse.core.resources.IWorkspaceRoot;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Path;
+import org.eclipse.equinox.app.IApplication;
+import org.eclipse.equinox.app.IApplicationContext;
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.IJavaElement;
+import org.eclipse.jdt.core.JavaCore;
+import org.eclipse.jface.preference.IPreferenceStore;
+
+import com.ixenit.membersort.Activator;
+import com.ixenit.membersort.engine.RuleSet;
+import com.ixenit.membersort.engine.Violation;
+import com.ixenit.membersort.handlers.SortJob;
+import com.ixenit.membersort.preferences.PreferenceConstants;
+import com.ixenit.membersort.preferences.converter.OrderConverter;
+
+/**
+ * Sorts the members of every Java project of a workspace without a
+ * workbench, e.g. on a build server:
+ *
+ * <pre>
+ * eclipse -nosplash -data &lt;workspace&gt; -application MemberSort.sortApplication
+ *     [-check] [-threads &lt;count&gt;] [-rules &lt;file&gt;] [&lt;path&gt; ...]
+ * </pre>
+ * <p>
+ * The projects found below the given paths are imported into the workspace
+ * first, without paths every open project of the workspace is sorted. The
+ * rule file has the format of the plug-in's preference file
+ * (<code>MemberSort.prefs</code>), without it every project is sorted with
+ * its own rules, or with the preferences of the workspace.
+ * </p>
+ * <p>
+ * With <code>-check</code> no file is changed, the first out of order member
+ * of every unsorted type is printed and the exit code tells whether every
+ * file is sorted, e.g. for a pre-merge gate.
+ * </p>
+ *
+ * @author Benjámin Hajnal <benjamin.hajnal@ixenit.com>
+ *
+ */
+public class SortApplication implements IApplication {
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.eclipse.equinox.app.IApplication#start(org.eclipse.equinox.app.IApplicationContext)
+	 */
+	@Override
+	public Object start(IApplicationContext context) throws Exception {
+		String[] args = (String[])context.getArguments().get(IApplicationContext.APPLICATION_ARGS);
+
+		boolean checkOnly = false;
+		int threads = Runtime.getRuntime().availableProcessors();
+		String rules = null;
+		List<String> paths = new ArrayList<>();
+
+		for (int i = 0; i < args.length; i++) {
+			if ("-check".equals(args[i])) {
+				checkOnly = true;
+			}
+			else if ("-threads".equals(args[i]) && i + 1 < args.length) {
+				threads = _parseThreads(args[++i]);
+
+				if (threads <= 0) {
+					System.err.println("Invalid number of threads: " + args[i]);
+
+					return _EXIT_USAGE;
+				}
+			}
+			else if ("-rules".equals(args[i]) && i + 1 < args.length) {
+				rules = args[++i];
+			}
+			else if (args[i].startsWith("-")) {
+				System.err.println("Unknown option: " + args[i]);
+
+				return _EXIT_USAGE;
+			}
+			else {
+				paths.add(args[i]);
+			}
+		}
+
+		IWorkspace workspace = ResourcesPlugin.getWorkspace();
+
+		// Building is not needed for sorting, it would only slow down the run
+		IWorkspaceDescription description = workspace.getDescription();
+		boolean autoBuilding = description.isAutoBuilding();
+
+		description.setAutoBuilding(false);
+		workspace.setDescription(description);
+
+		try {
+			for (String path : paths) {
+				_importProjects(workspace, new File(path));
+			}
+
+			return _sort(workspace, _loadRules(rules), threads, checkOnly);
+		}
+		finally {
+			description.setAutoBuilding(autoBuilding);
+			workspace.setDescription(description);
+
+			workspace.save(true, null);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.eclipse.equinox.app.IApplication#stop()
+	 */
+	@Override
+	public void stop() {
+	}
+
+	private void _importProjects(IWorkspace workspace, File directory) throws CoreException {
+		File projectFile = new File(directory, IProjectDescription.DESCRIPTION_FILE_NAME);
+
+		if (projectFile.isFile()) {
+			IProjectDescription description = workspace.loadProjectDescription(
+				new Path(projectFile.getAbsolutePath()));
+
+			IProject project = workspace.getRoot().getProject(description.getName());
+
+			if (!project.exists()) {
+				description.setLocation(new Path(directory.getAbsolutePath()));
+
+				project.create(description, null);
+			}
+
+			project.open(null);
+
+			return;
+		}
+
+		File[] children = directory.listFiles();
+
+		if (children == null) {
+			return;
+		}
+
+		for (File child : children) {
+			if (child.isDirectory() && !child.getName().startsWith(".")) {
+				_importProjects(workspace, child);
+			}
+		}
+	}
+
+	private RuleSet _loadRules(String rules) throws IOException {
+
+		// Every project is sorted with its own rules
+		if (rules == null) {
+			return null;
+		}
+
+		IPreferenceStore preferenceStore = Activator.getDefault().getPreferenceStore();
+
+		Properties properties = new Properties();
+
+		try (InputStream in = new FileInputStream(rules)) {
+			properties.load(in);
+		}
+
+		String order = properties.getProperty(
+			PreferenceConstants.P_ORDER, preferenceStore.getString(PreferenceConstants.P_ORDER));
+
+		String orderByName = properties.getProperty(
+			PreferenceConstants.P_ORDER_BY_NAME,
+			String.valueOf(preferenceStore.getBoolean(PreferenceConstants.P_ORDER_BY_NAME)));
+
+		return RuleSet.compile(OrderConverter.convert(order), Boolean.parseBoolean(orderByName));
+	}
+
+	/**
+	 * Parses the value of the <code>-threads</code> option.
+	 *
+	 * @return the number of threads, or 0 if the value is not a number
+	 */
+	private static int _parseThreads(String value) {
+		try {
+			return Integer.parseInt(value);
+		}
+		catch (NumberFormatException e) {
+			return 0;
+		}
+	}
+
+	private Integer _sort(IWorkspace workspace, RuleSet ruleSet, int threads, boolean checkOnly)
+		throws CoreException {
+
+		IWorkspaceRoot root = workspace.getRoot();
+
+		List<IJavaElement> elements = new ArrayList<>();
+
+		for (IProject project : root.getProjects()) {
+			if (project.isOpen() && project.hasNature(JavaCore.NATURE_ID)) {
+				elements.add(JavaCore.create(project));
+			}
+		}
+
+		long start = System.nanoTime();
+
+		List<SortJob> jobs = SortJob.create(elements, ruleSet, threads, checkOnly);
+
+		for (SortJob job : jobs) {
+			job.schedule();
+		}
+
+		int scanned = 0;
+		int skipped = 0;
+		int changed = 0;
+		int unsorted = 0;
+		int failed = 0;
+
+		for (SortJob job : jobs) {
+			try {
+				job.join();
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+
+				return _EXIT_FAILED;
+			}
+
+			scanned += job.getScanned();
+			skipped += job.getSkipped();
+			changed += job.getChanged();
+			failed += job.getFailed();
+			unsorted += job.getViolations().size();
+
+			for (Entry<ICompilationUnit, List<Violation>> entry : job.getViolations().entrySet()) {
+				for (Violation violation : entry.getValue()) {
+					System.out.println(entry.getKey().getPath() + ":" + violation);
+				}
+			}
+
+			IStatus result = job.getResult();
+
+			if (result != null && !result.isOK()) {
+				_print(result, "");
+			}
+		}
+
+		double seconds = (System.nanoTime() - start) / 1e9;
+
+		if (checkOnly) {
+			System.out.println(String.format(
+				Locale.ROOT, "Scanned: %d, unchanged since last sort: %d, unsorted: %d, failed: %d", scanned,
+				skipped, unsorted, failed));
+		}
+		else {
+			System.out.println(String.format(
+				Locale.ROOT, "Scanned: %d, unchanged since last sort: %d, changed: %d, failed: %d", scanned,
+				skipped, changed, failed));
+		}
+
+		System.out.println(String.format(
+			Locale.ROOT, "%s %d files in %.2f s (%.1f files/s)", checkOnly ? "Checked" : "Sorted", scanned,
+			seconds, (seconds > 0) ? scanned / seconds : 0));
+
+		if (failed > 0) {
+			return _EXIT_FAILED;
+		}
+
+		return (unsorted == 0) ? IApplication.EXIT_OK : _EXIT_UNSORTED;
+	}
+
+	private void _print(IStatus status, String indent) {
+		System.err.println(indent + status.getMessage());
+
+		for (IStatus child : status.getChildren()) {
+			_print(child, indent + "  ");
+		}
+	}
+
+	private static final Integer _EXIT_FAILED = 1;
+
+	private static final Integer _EXIT_UNSORTED = 3;
+
+	private static final Integer _EXIT_USAGE = 2;
+
+}
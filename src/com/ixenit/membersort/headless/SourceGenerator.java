@@ -0,0 +1,169 @@
+/*******************************************************************************
+ * Copyright 2015 Ixenit
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *******************************************************************************/
+package com.ixenit.membersort.headless;
+
+import java.util.Random;
+
+/**
+ * Generates synthetic compilation units with a given number of members in
+ * random order.
+ * <p>
+ * The kinds of the members follow the mix of a typical class: mostly
+ * private fields and public or private methods, a few constants,
+ * constructors, nested classes, enums and initializers. The same seed gives
+ * the same source, so runs can be compared. Used by the
+ * {@link BenchmarkApplication} and by the JMH benchmarks in
+ * <code>bench/</code>.
+ * </p>
+ *
+ * @author Benjámin Hajnal <benjamin.hajnal@ixenit.com>
+ *
+ */
+public final class SourceGenerator {
+
+	/**
+	 * Generates a unit with a single class.
+	 *
+	 * @param packageName
+	 *        the package of the class
+	 * @param className
+	 *        the name of the class
+	 * @param members
+	 *        the number of members of the class
+	 * @param seed
+	 *        the seed of the random order
+	 * @return the source of the unit
+	 */
+	public static String generate(String packageName, String className, int members, long seed) {
+		Random random = new Random(seed);
+
+		StringBuilder sb = new StringBuilder();
+
+		sb.append("package ").append(packageName).append(";\n\n");
+		sb.append("import java.util.ArrayList;\nimport java.util.List;\n\n");
+		sb.append("/**\n * Generated with ").append(members).append(" members.\n */\n");
+		sb.append("public class ").append(className).append(" {\n");
+
+		for (int i = 0; i < members; i++) {
+			sb.append('\n');
+
+			_appendMember(sb, className, _pick(random), i);
+		}
+
+		sb.append("\n}\n");
+
+		return sb.toString();
+	}
+
+	private static void _appendMember(StringBuilder sb, String className, String kind, int i) {
+		switch (kind) {
+			case "constant":
+				sb.append("\tpublic static final int CONSTANT_").append(i).append(" = ").append(i).append(";\n");
+				break;
+
+			case "logger":
+				sb.append("\tprivate static final String _NAME_").append(i).append(" = \"name").append(i);
+				sb.append("\";\n");
+				break;
+
+			case "field":
+				sb.append("\tprivate List<String> _field").append(i).append(" = new ArrayList<>();\n");
+				break;
+
+			case "finalField":
+				sb.append("\tprivate final int _final").append(i).append(" = ").append(i).append(";\n");
+				break;
+
+			case "protectedField":
+				sb.append("\tprotected int field").append(i).append(";\n");
+				break;
+
+			case "constructor":
+				sb.append("\t/**\n\t * Constructor ").append(i).append(".\n\t */\n");
+				sb.append("\tpublic ").append(className).append("(int value").append(i).append(", String name) {\n");
+				sb.append("\t\tthis(value").append(i).append(");\n\t}\n");
+				break;
+
+			case "publicMethod":
+				sb.append("\t/**\n\t * Method ").append(i).append(".\n\t */\n");
+				sb.append("\tpublic String method").append(i).append("(int value) {\n");
+				sb.append("\t\tif (value > ").append(i).append(") {\n\t\t\treturn \"big\";\n\t\t}\n\n");
+				sb.append("\t\treturn String.valueOf(value * ").append(i).append(");\n\t}\n");
+				break;
+
+			case "privateMethod":
+				sb.append("\tprivate int _method").append(i).append("(List<String> values) {\n");
+				sb.append("\t\tint sum = 0;\n\n\t\tfor (String value : values) {\n");
+				sb.append("\t\t\tsum += value.length();\n\t\t}\n\n\t\treturn sum;\n\t}\n");
+				break;
+
+			case "protectedMethod":
+				sb.append("\tprotected void method").append(i).append("() {\n");
+				sb.append("\t\t_field").append(i).append(" = null;\n\t}\n");
+				break;
+
+			case "staticMethod":
+				sb.append("\tpublic static ").append(className).append(" create").append(i).append("() {\n");
+				sb.append("\t\treturn new ").append(className).append("();\n\t}\n");
+				break;
+
+			case "synchronizedMethod":
+				sb.append("\tprotected synchronized void locked").append(i).append("() {\n\t}\n");
+				break;
+
+			case "class":
+				sb.append("\tprivate static class Nested").append(i).append(" {\n\n");
+				sb.append("\t\tprivate int _value;\n\n\t\tpublic int getValue() {\n");
+				sb.append("\t\t\treturn _value;\n\t\t}\n\n\t}\n");
+				break;
+
+			case "enum":
+				sb.append("\tpublic enum Kind").append(i).append(" {\n\t\tFIRST, SECOND\n\t}\n");
+				break;
+
+			default:
+				sb.append("\tstatic {\n\t\tSystem.setProperty(\"init").append(i).append("\", \"\");\n\t}\n");
+				break;
+		}
+	}
+
+	private static String _pick(Random random) {
+		int weight = random.nextInt(_TOTAL_WEIGHT);
+
+		for (int i = 0; i < _KINDS.length; i++) {
+			weight -= _WEIGHTS[i];
+
+			if (weight < 0) {
+				return _KINDS[i];
+			}
+		}
+
+		return _KINDS[0];
+	}
+
+	private SourceGenerator() {
+		// Only static methods
+	}
+
+	private static final String[] _KINDS = {
+		"field", "publicMethod", "privateMethod", "constant", "finalField", "protectedMethod", "staticMethod",
+		"constructor", "logger", "protectedField", "synchronizedMethod", "class", "enum", "init" };
+
+	private static final int _TOTAL_WEIGHT = 100;
+
+	private static final int[] _WEIGHTS = { 25, 22, 15, 8, 6, 5, 5, 3, 3, 3, 2, 1, 1, 1 };
+
+}
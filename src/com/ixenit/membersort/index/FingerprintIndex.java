@@ -0,0 +1,460 @@
+/*******************************************************************************
+ * Copyright 2015 Ixenit
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *******************************************************************************/
+package com.ixenit.membersort.index;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A persistent set of files known to be sorted.
+ * <p>
+ * Every file is stored with a fingerprint (the hash of its content and of
+ * the rules it was sorted with), so a file can be skipped as long as both
+ * are unchanged. The index is an open addressing hash table in a memory
+ * mapped file: a slot is 16 bytes (the hash of the path and the
+ * fingerprint), so a lookup touches a single page and 100k files need less
+ * than 4 MB.
+ * </p>
+ * <p>
+ * The file only grows while it is mapped, a mapped file cannot be truncated
+ * on every platform. Opening the index compacts it: the table is rebuilt
+ * with the capacity its files need, before the file is mapped. Deleted and
+ * renamed files are removed by the owner of the index (see
+ * {@link #remove(String)}).
+ * </p>
+ * <p>
+ * Instances are thread-safe.
+ * </p>
+ *
+ * @author Benjámin Hajnal <benjamin.hajnal@ixenit.com>
+ *
+ */
+public final class FingerprintIndex {
+
+	/**
+	 * The initial value of a hash.
+	 */
+	public static final long HASH_SEED = 0xcbf29ce484222325L;
+
+	/**
+	 * Continues a 64 bit FNV-1a hash with the given bytes.
+	 *
+	 * @param hash
+	 *        the hash so far, {@link #HASH_SEED} to start a new one
+	 * @param bytes
+	 *        the buffer
+	 * @param length
+	 *        the number of bytes to hash from the start of the buffer
+	 * @return the new hash
+	 */
+	public static long hash(long hash, byte[] bytes, int length) {
+		for (int i = 0; i < length; i++) {
+			hash ^= bytes[i] & 0xff;
+			hash *= _FNV_PRIME;
+		}
+
+		return hash;
+	}
+
+	/**
+	 * Continues a 64 bit FNV-1a hash with the given value.
+	 *
+	 * @param hash
+	 *        the hash so far, {@link #HASH_SEED} to start a new one
+	 * @param value
+	 *        the value
+	 * @return the new hash
+	 */
+	public static long hash(long hash, long value) {
+		for (int i = 0; i < 8; i++) {
+			hash ^= (value >>> (i * 8)) & 0xff;
+			hash *= _FNV_PRIME;
+		}
+
+		return hash;
+	}
+
+	/**
+	 * Opens the index stored in the given file and compacts it. A missing or
+	 * unreadable file gives an empty index.
+	 *
+	 * @param file
+	 *        the file of the index
+	 * @return the index
+	 * @throws IOException
+	 *         if the file cannot be created or mapped
+	 */
+	public static FingerprintIndex open(File file) throws IOException {
+		File parent = file.getParentFile();
+
+		if (parent != null) {
+			parent.mkdirs();
+		}
+
+		return new FingerprintIndex(new RandomAccessFile(file, "rw"));
+	}
+
+	/**
+	 * Removes every file from the index, e.g. before a benchmark run. The
+	 * file keeps its length until the index is opened again.
+	 */
+	public synchronized void clear() {
+		_reset();
+	}
+
+	/**
+	 * Writes the index to the disk and releases the file.
+	 */
+	public synchronized void close() {
+		if (_buffer == null) {
+			return;
+		}
+
+		_buffer.force();
+		_buffer = null;
+
+		try {
+			_file.close();
+		}
+		catch (IOException e) {
+			// The content is already forced to the disk
+		}
+	}
+
+	/**
+	 * Tells whether the given file was recorded with the given fingerprint.
+	 *
+	 * @param path
+	 *        the path of the file
+	 * @param fingerprint
+	 *        the current fingerprint of the file
+	 * @return <code>true</code> if the file is known to be sorted
+	 */
+	public synchronized boolean contains(String path, long fingerprint) {
+		if (_buffer == null) {
+			return false;
+		}
+
+		int slot = _find(_key(path));
+
+		return (slot >= 0) && (_buffer.getLong(_offset(slot) + 8) == fingerprint);
+	}
+
+	/**
+	 * Records the given file as sorted.
+	 *
+	 * @param path
+	 *        the path of the file
+	 * @param fingerprint
+	 *        the fingerprint of the sorted file
+	 */
+	public synchronized void put(String path, long fingerprint) {
+		if (_buffer == null) {
+			return;
+		}
+
+		if ((_size + 1) * 4 > _capacity * 3) {
+			_grow();
+
+			if (_buffer == null) {
+				return;
+			}
+		}
+
+		_insert(_key(path), fingerprint);
+	}
+
+	/**
+	 * Removes the given file from the index, e.g. because it was deleted or
+	 * renamed.
+	 *
+	 * @param path
+	 *        the path of the file
+	 */
+	public synchronized void remove(String path) {
+		if (_buffer == null) {
+			return;
+		}
+
+		int slot = _find(_key(path));
+
+		if (slot < 0) {
+			return;
+		}
+
+		int mask = _capacity - 1;
+
+		// Moves the following slots of the probe sequence back, so no lookup
+		// stops at the emptied slot
+		for (int next = (slot + 1) & mask;; next = (next + 1) & mask) {
+			long key = _buffer.getLong(_offset(next));
+
+			if (key == 0) {
+				break;
+			}
+
+			if (((next - _home(key)) & mask) >= ((next - slot) & mask)) {
+				_buffer.putLong(_offset(slot), key);
+				_buffer.putLong(_offset(slot) + 8, _buffer.getLong(_offset(next) + 8));
+
+				slot = next;
+			}
+		}
+
+		_buffer.putLong(_offset(slot), 0);
+		_buffer.putLong(_offset(slot) + 8, 0);
+
+		_size--;
+
+		_buffer.putInt(12, _size);
+	}
+
+	/**
+	 * Returns the number of files in the index.
+	 *
+	 * @return the number of files
+	 */
+	public synchronized int size() {
+		return _size;
+	}
+
+	private static long _key(String path) {
+		byte[] bytes = path.getBytes(StandardCharsets.UTF_8);
+
+		long key = hash(HASH_SEED, bytes, bytes.length);
+
+		// Zero marks an empty slot
+		return (key == 0) ? 1 : key;
+	}
+
+	private static int _offset(int slot) {
+		return _HEADER_SIZE + slot * _SLOT_SIZE;
+	}
+
+	private FingerprintIndex(RandomAccessFile file) throws IOException {
+		_file = file;
+
+		int capacity = 0;
+		int size = 0;
+
+		if (file.length() >= _HEADER_SIZE) {
+			file.seek(0);
+
+			if (file.readInt() == _MAGIC && file.readInt() == _VERSION) {
+				capacity = file.readInt();
+				size = file.readInt();
+			}
+		}
+
+		// Start over if the file is missing, old or broken
+		if (capacity < _INITIAL_CAPACITY || Integer.bitCount(capacity) != 1 || size < 0 || size > capacity
+			|| file.length() < _HEADER_SIZE + (long)capacity * _SLOT_SIZE) {
+
+			file.setLength(_HEADER_SIZE + (long)_INITIAL_CAPACITY * _SLOT_SIZE);
+
+			_map(_INITIAL_CAPACITY);
+			_reset();
+
+			return;
+		}
+
+		// The file is not mapped yet, so it can be rebuilt smaller
+		ByteBuffer table = ByteBuffer.allocate(capacity * _SLOT_SIZE);
+
+		while (table.hasRemaining() && file.getChannel().read(table, _HEADER_SIZE + table.position()) > 0) {
+			// Reads the whole table
+		}
+
+		long[] keys = new long[capacity];
+		long[] fingerprints = new long[capacity];
+
+		int count = 0;
+
+		for (int slot = 0; slot < capacity; slot++) {
+			long key = table.getLong(slot * _SLOT_SIZE);
+
+			if (key != 0) {
+				keys[count] = key;
+				fingerprints[count] = table.getLong(slot * _SLOT_SIZE + 8);
+				count++;
+			}
+		}
+
+		int compacted = _INITIAL_CAPACITY;
+
+		while (count * 4 > compacted * 3) {
+			compacted *= 2;
+		}
+
+		file.setLength(_HEADER_SIZE + (long)compacted * _SLOT_SIZE);
+
+		_map(compacted);
+		_reset(compacted);
+
+		if (_buffer == null) {
+			return;
+		}
+
+		for (int i = 0; i < count; i++) {
+			_insert(keys[i], fingerprints[i]);
+		}
+	}
+
+	private int _find(long key) {
+		int mask = _capacity - 1;
+
+		for (int slot = _home(key);; slot = (slot + 1) & mask) {
+			long slotKey = _buffer.getLong(_offset(slot));
+
+			if (slotKey == key) {
+				return slot;
+			}
+
+			if (slotKey == 0) {
+				return -(slot + 1);
+			}
+		}
+	}
+
+	private void _grow() {
+		int capacity = _capacity;
+
+		long[] keys = new long[_size];
+		long[] fingerprints = new long[_size];
+
+		int count = 0;
+
+		for (int slot = 0; slot < capacity; slot++) {
+			long key = _buffer.getLong(_offset(slot));
+
+			if (key != 0) {
+				keys[count] = key;
+				fingerprints[count] = _buffer.getLong(_offset(slot) + 8);
+				count++;
+			}
+		}
+
+		// Mapping a larger region grows the file, the old mapping stays valid
+		// until it is collected
+		_map(capacity * 2);
+		_reset(capacity * 2);
+
+		if (_buffer == null) {
+			return;
+		}
+
+		for (int i = 0; i < count; i++) {
+			_insert(keys[i], fingerprints[i]);
+		}
+	}
+
+	/**
+	 * Returns the first slot of the probe sequence of the given key.
+	 */
+	private int _home(long key) {
+		return (int)(key ^ (key >>> 32)) & (_capacity - 1);
+	}
+
+	private void _insert(long key, long fingerprint) {
+		int slot = _find(key);
+
+		if (slot < 0) {
+			slot = -(slot + 1);
+
+			_buffer.putLong(_offset(slot), key);
+
+			_size++;
+
+			_buffer.putInt(12, _size);
+		}
+
+		_buffer.putLong(_offset(slot) + 8, fingerprint);
+	}
+
+	private void _map(int capacity) {
+		long length = _HEADER_SIZE + (long)capacity * _SLOT_SIZE;
+
+		try {
+			FileChannel channel = _file.getChannel();
+
+			// Never shrinks the file, it may still be mapped
+			_buffer = channel.map(MapMode.READ_WRITE, 0, length);
+		}
+		catch (IOException e) {
+
+			// The index is only an optimization, without it every file is sorted
+			_buffer = null;
+		}
+	}
+
+	private void _reset() {
+		_reset(_INITIAL_CAPACITY);
+	}
+
+	/**
+	 * Empties the table with the given capacity, which fits into the
+	 * mapped region.
+	 */
+	private void _reset(int capacity) {
+		if (_buffer == null) {
+			return;
+		}
+
+		_capacity = capacity;
+		_size = 0;
+
+		for (int slot = 0; slot < _capacity; slot++) {
+			_buffer.putLong(_offset(slot), 0);
+			_buffer.putLong(_offset(slot) + 8, 0);
+		}
+
+		_writeHeader();
+	}
+
+	private void _writeHeader() {
+		_buffer.putInt(0, _MAGIC);
+		_buffer.putInt(4, _VERSION);
+		_buffer.putInt(8, _capacity);
+		_buffer.putInt(12, _size);
+	}
+
+	private static final long _FNV_PRIME = 0x100000001b3L;
+
+	private static final int _HEADER_SIZE = 16;
+
+	private static final int _INITIAL_CAPACITY = 4096;
+
+	private static final int _MAGIC = 0x4d534958;
+
+	private static final int _SLOT_SIZE = 16;
+
+	private static final int _VERSION = 1;
+
+	private MappedByteBuffer _buffer;
+
+	private int _capacity;
+
+	private int _size;
+
+	private final RandomAccessFile _file;
+
+}
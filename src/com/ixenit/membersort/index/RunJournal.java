@@ -0,0 +1,252 @@
+/*******************************************************************************
+ * Copyright 2015 Ixenit
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *******************************************************************************/
+package com.ixenit.membersort.index;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * An append-only journal of the files processed by an unfinished sort run.
+ * <p>
+ * Every processed file is appended with its modification stamp. If the run
+ * is cancelled or Eclipse stops before it ends, running the same selection
+ * with the same rules again skips the files in the journal whose stamp is
+ * unchanged, without even reading them. A journal written with other rules
+ * is started over. The journal of a finished run is deleted.
+ * </p>
+ * <p>
+ * Only the hashes of the paths are kept in memory. A line cut short by a crash
+ * is ignored. The file is locked while the journal is open, a concurrent run
+ * of the same selection goes without a journal. Instances are not
+ * thread-safe.
+ * </p>
+ *
+ * @author Benjámin Hajnal <benjamin.hajnal@ixenit.com>
+ *
+ */
+public final class RunJournal {
+
+	/**
+	 * Opens the journal stored in the given file and appends to it. The file
+	 * is locked until the journal is closed, so concurrent runs of the same
+	 * selection do not share it.
+	 *
+	 * @param file
+	 *        the file of the journal
+	 * @param ruleFingerprint
+	 *        the fingerprint of the rules of the run, a journal written with
+	 *        other rules is started over
+	 * @return the journal or <code>null</code> if another run is using it
+	 * @throws IOException
+	 *         if the file cannot be created
+	 */
+	public static RunJournal open(File file, long ruleFingerprint) throws IOException {
+		File parent = file.getParentFile();
+
+		if (parent != null) {
+			parent.mkdirs();
+		}
+
+		FileChannel channel = FileChannel.open(
+			file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+		try {
+			FileLock lock;
+
+			try {
+				lock = channel.tryLock();
+			}
+			catch (OverlappingFileLockException e) {
+
+				// Locked by a run of this JVM
+				lock = null;
+			}
+
+			if (lock == null) {
+				channel.close();
+
+				return null;
+			}
+
+			String header = _HEADER + Long.toHexString(ruleFingerprint);
+
+			Map<Long, Long> stamps = new HashMap<>();
+
+			// Read through the locking channel, the lock may be mandatory.
+			// The reader is not closed, it would close the channel.
+			BufferedReader reader = new BufferedReader(
+				new InputStreamReader(Channels.newInputStream(channel), StandardCharsets.UTF_8));
+
+			boolean resumed = header.equals(reader.readLine());
+
+			for (String line; resumed && (line = reader.readLine()) != null;) {
+				int separator = line.indexOf(' ');
+
+				if (separator <= 0) {
+					continue;
+				}
+
+				try {
+					stamps.put(_key(line.substring(separator + 1)), Long.parseLong(line.substring(0, separator)));
+				}
+				catch (NumberFormatException e) {
+					// Cut short by a crash
+				}
+			}
+
+			if (!resumed) {
+				stamps.clear();
+
+				channel.truncate(0);
+			}
+
+			channel.position(channel.size());
+
+			Writer writer = new BufferedWriter(
+				new OutputStreamWriter(Channels.newOutputStream(channel), StandardCharsets.UTF_8));
+
+			if (!resumed) {
+				writer.write(header);
+			}
+
+			// Ends a line cut short by a crash, an empty line is ignored
+			writer.write('\n');
+			writer.flush();
+
+			return new RunJournal(file, writer, stamps);
+		}
+		catch (IOException | RuntimeException e) {
+			channel.close();
+
+			throw e;
+		}
+	}
+
+	/**
+	 * Records the given file as processed.
+	 *
+	 * @param path
+	 *        the path of the file
+	 * @param stamp
+	 *        the modification stamp of the processed file
+	 */
+	public void append(String path, long stamp) {
+		if (_writer == null) {
+			return;
+		}
+
+		try {
+			_writer.write(Long.toString(stamp));
+			_writer.write(' ');
+			_writer.write(path);
+			_writer.write('\n');
+
+			// A crash loses at most the last few files
+			if (++_unflushed >= _FLUSH_INTERVAL) {
+				_writer.flush();
+
+				_unflushed = 0;
+			}
+		}
+		catch (IOException e) {
+
+			// The journal is only an optimization, the run goes on without it
+			close();
+		}
+	}
+
+	/**
+	 * Writes the journal to the disk and releases the file, e.g. when the run
+	 * is cancelled.
+	 */
+	public void close() {
+		if (_writer == null) {
+			return;
+		}
+
+		try {
+			_writer.close();
+		}
+		catch (IOException e) {
+			// Resuming reads what was written
+		}
+
+		_writer = null;
+	}
+
+	/**
+	 * Tells whether the given file was processed by the run and was not
+	 * changed since.
+	 *
+	 * @param path
+	 *        the path of the file
+	 * @param stamp
+	 *        the current modification stamp of the file
+	 * @return <code>true</code> if the file can be skipped
+	 */
+	public boolean contains(String path, long stamp) {
+		Long processed = _stamps.get(_key(path));
+
+		return processed != null && processed == stamp;
+	}
+
+	/**
+	 * Deletes the journal when the run is finished.
+	 */
+	public void delete() {
+		close();
+
+		_file.delete();
+	}
+
+	private static long _key(String path) {
+		byte[] bytes = path.getBytes(StandardCharsets.UTF_8);
+
+		return FingerprintIndex.hash(FingerprintIndex.HASH_SEED, bytes, bytes.length);
+	}
+
+	private RunJournal(File file, Writer writer, Map<Long, Long> stamps) {
+		_file = file;
+		_writer = writer;
+		_stamps = stamps;
+	}
+
+	private static final int _FLUSH_INTERVAL = 64;
+
+	private static final String _HEADER = "MemberSort journal 1 ";
+
+	private int _unflushed;
+
+	private Writer _writer;
+
+	private final File _file;
+
+	private final Map<Long, Long> _stamps;
+
+}
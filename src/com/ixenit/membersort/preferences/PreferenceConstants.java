@@ -15,6 +15,8 @@
  *******************************************************************************/
 package com.ixenit.membersort.preferences;
 
+import com.ixenit.membersort.engine.RuleSet;
+
 /**
  * Constant definitions for plug-in preferences
  *
@@ -23,18 +25,36 @@ package com.ixenit.membersort.preferences;
  */
 public class PreferenceConstants {
 
-	public static final String[] MODIFIERS = { "static", "final", "abstract", "synchronized", "transient", "volatile" };
+	public static final int MAX_THREADS = 64;
+
+	public static final String[] MODIFIERS = RuleSet.MODIFIERS;
+
+	public static final String P_COLLECT_STATISTICS = "collectStatisticsPreference";
+
+	public static final String P_MAX_IN_FLIGHT = "maxInFlightPreference";
+
+	public static final String P_MOVE_OUT_OF_PLACE_ONLY = "moveOutOfPlaceOnlyPreference";
 
 	public static final String P_ORDER_BY_NAME = "orderByNamePreference";
 
 	public static final String P_ORDER = "orderPreference";
 
+	public static final String P_PROJECT_SPECIFIC = "projectSpecificPreference";
+
+	public static final String P_SORT_CHANGED_TYPES_ONLY = "sortChangedTypesOnlyPreference";
+
+	public static final String P_SORT_ON_SAVE = "sortOnSavePreference";
+
+	public static final String P_STRUCTURAL_PARSE = "structuralParsePreference";
+
+	public static final String P_THREADS = "threadsPreference";
+
 	public static final String SEPARATOR = ",";
 
-	public static final String[] TYPES = { "constructor", "method", "variable", "class", "enum", "init", };
+	public static final String[] TYPES = RuleSet.TYPES;
 
-	public static final String[] VISIBILITIES = { "public", "private", "protected", "package" };
+	public static final String[] VISIBILITIES = RuleSet.VISIBILITIES;
 
-	public static final String VISIBLE_SEPARATOR = " ";
+	public static final String VISIBLE_SEPARATOR = RuleSet.WORD_SEPARATOR;
 
 }
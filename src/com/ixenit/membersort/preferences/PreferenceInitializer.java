@@ -19,6 +19,7 @@ import org.eclipse.core.runtime.preferences.AbstractPreferenceInitializer;
 import org.eclipse.jface.preference.IPreferenceStore;
 
 import com.ixenit.membersort.Activator;
+import com.ixenit.membersort.engine.RuleSet;
 
 /**
  * Class used to initialize default preference values.
@@ -40,49 +41,23 @@ public class PreferenceInitializer extends AbstractPreferenceInitializer {
 
 		StringBuilder sb = new StringBuilder();
 
-		for (String string : _DEFAULT_ORDER) {
+		for (String string : RuleSet.DEFAULT_ORDER) {
 			sb.append(PreferenceConstants.SEPARATOR).append(string);
 		}
 
 		sb.deleteCharAt(0);
 
+		store.setDefault(PreferenceConstants.P_COLLECT_STATISTICS, false);
+		store.setDefault(PreferenceConstants.P_MAX_IN_FLIGHT, 256);
+		store.setDefault(PreferenceConstants.P_MOVE_OUT_OF_PLACE_ONLY, false);
 		store.setDefault(PreferenceConstants.P_ORDER, sb.toString());
 		store.setDefault(PreferenceConstants.P_ORDER_BY_NAME, true);
+		store.setDefault(PreferenceConstants.P_SORT_CHANGED_TYPES_ONLY, true);
+		store.setDefault(PreferenceConstants.P_SORT_ON_SAVE, false);
+		store.setDefault(PreferenceConstants.P_STRUCTURAL_PARSE, false);
+		store.setDefault(
+			PreferenceConstants.P_THREADS,
+			Math.min(Runtime.getRuntime().availableProcessors(), PreferenceConstants.MAX_THREADS));
 	}
 
-	private static String[] _DEFAULT_ORDER = {
-
-			// PUBLIC
-			"public static final variable", "public static variable",
-
-			"public static method", "public constructor", "public method",
-
-			// PACKAGE
-			"package static method", "package constructor", "package method",
-
-			"package static final variable", "package static variable", "package variable", "package final variable",
-
-			// PROTECTED
-			"protected static method", "protected constructor", "protected method",
-
-			"protected static final variable", "protected static variable", "protected variable", "protected final variable",
-
-			// PRIVATE
-			"private static method", "private constructor", "private method",
-
-			"public variable", "public final variable",
-
-			// "private static final log", "private static final instance",
-
-			"private static final variable", "private static variable", "private variable", "private final variable",
-
-			"static init",
-
-			// CLASSES
-
-			"public static class", "public class", "protected static class", "protected class", "private static class", "private class",
-
-			// ENUMS
-			"public enum", "package enum", "protected enum", "private enum" };
-
 }
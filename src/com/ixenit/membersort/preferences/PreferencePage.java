@@ -17,6 +17,7 @@ package com.ixenit.membersort.preferences;
 
 import org.eclipse.jface.preference.BooleanFieldEditor;
 import org.eclipse.jface.preference.FieldEditorPreferencePage;
+import org.eclipse.jface.preference.IntegerFieldEditor;
 import org.eclipse.swt.widgets.Composite;
 import org.eclipse.ui.IWorkbench;
 import org.eclipse.ui.IWorkbenchPreferencePage;
@@ -49,20 +50,40 @@ public class PreferencePage extends FieldEditorPreferencePage implements IWorkbe
 		addField(
 			new BooleanFieldEditor(PreferenceConstants.P_ORDER_BY_NAME, "Sort by name", parent));
 
-		addField(new ListEditor(PreferenceConstants.P_ORDER, "Order of members", parent) {
+		addField(createOrderEditor(parent));
 
-			@Override
-			protected String createList(String[] items) {
-				return OrderConverter.convert(items);
-			}
+		addField(
+			new BooleanFieldEditor(PreferenceConstants.P_SORT_ON_SAVE, "Sort members when a Java file is saved", parent));
 
-			@Override
-			protected String[] parseString(String stringList) {
-				return OrderConverter.convert(stringList);
-			}
+		addField(new BooleanFieldEditor(
+			PreferenceConstants.P_SORT_CHANGED_TYPES_ONLY, "On save, only sort the types whose members were changed",
+			parent));
+
+		addField(new BooleanFieldEditor(
+			PreferenceConstants.P_MOVE_OUT_OF_PLACE_ONLY, "Move only the members out of place (smaller changes)",
+			parent));
+
+		addField(new BooleanFieldEditor(
+			PreferenceConstants.P_STRUCTURAL_PARSE,
+			"Check the order without method bodies first, only parse unsorted files in full", parent));
+
+		IntegerFieldEditor threadsEditor = new IntegerFieldEditor(
+			PreferenceConstants.P_THREADS, "Number of sorting threads", parent);
+
+		threadsEditor.setValidRange(1, PreferenceConstants.MAX_THREADS);
+
+		addField(threadsEditor);
+
+		IntegerFieldEditor maxInFlightEditor = new IntegerFieldEditor(
+			PreferenceConstants.P_MAX_IN_FLIGHT, "Maximum number of files in memory while sorting", parent);
 
-		});
+		maxInFlightEditor.setValidRange(1, 100000);
 
+		addField(maxInFlightEditor);
+
+		addField(new BooleanFieldEditor(
+			PreferenceConstants.P_COLLECT_STATISTICS, "Collect statistics of sort runs (error log and statistics view)",
+			parent));
 	}
 
 	/*
@@ -74,4 +95,24 @@ public class PreferencePage extends FieldEditorPreferencePage implements IWorkbe
 	public void init(IWorkbench workbench) {
 	}
 
+	/**
+	 * Creates the editor of the order of members, shared with the project
+	 * property page.
+	 */
+	static ListEditor createOrderEditor(Composite parent) {
+		return new ListEditor(PreferenceConstants.P_ORDER, "Order of members", parent) {
+
+			@Override
+			protected String createList(String[] items) {
+				return OrderConverter.convert(items);
+			}
+
+			@Override
+			protected String[] parseString(String stringList) {
+				return OrderConverter.convert(stringList);
+			}
+
+		};
+	}
+
 }
\ No newline at end of file
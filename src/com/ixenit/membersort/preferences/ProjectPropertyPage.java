@@ -0,0 +1,129 @@
+/*******************************************************************************
+ * Copyright 2015 Ixenit
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *******************************************************************************/
+package com.ixenit.membersort.preferences;
+
+import java.io.IOException;
+
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.ProjectScope;
+import org.eclipse.core.runtime.IAdaptable;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.jface.preference.BooleanFieldEditor;
+import org.eclipse.jface.preference.FieldEditorPreferencePage;
+import org.eclipse.jface.preference.IPreferenceStore;
+import org.eclipse.swt.widgets.Composite;
+import org.eclipse.ui.IWorkbenchPropertyPage;
+import org.eclipse.ui.preferences.ScopedPreferenceStore;
+
+import com.ixenit.membersort.Activator;
+
+/**
+ * Edits the ordering rules of a single project. They are stored in the
+ * project settings, so they can be shared with the project. The rules of
+ * the workspace apply unless project specific rules are enabled.
+ *
+ * @author Benjámin Hajnal <benjamin.hajnal@ixenit.com>
+ *
+ */
+public class ProjectPropertyPage extends FieldEditorPreferencePage implements IWorkbenchPropertyPage {
+
+	public ProjectPropertyPage() {
+		super(GRID);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.eclipse.jface.preference.FieldEditorPreferencePage#createFieldEditors()
+	 */
+	@Override
+	public void createFieldEditors() {
+		Composite parent = getFieldEditorParent();
+
+		addField(new BooleanFieldEditor(
+			PreferenceConstants.P_PROJECT_SPECIFIC, "Enable project specific ordering rules", parent));
+
+		addField(
+			new BooleanFieldEditor(PreferenceConstants.P_ORDER_BY_NAME, "Sort by name", parent));
+
+		addField(PreferencePage.createOrderEditor(parent));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.eclipse.ui.IWorkbenchPropertyPage#getElement()
+	 */
+	@Override
+	public IAdaptable getElement() {
+		return _element;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.eclipse.jface.preference.FieldEditorPreferencePage#performOk()
+	 */
+	@Override
+	public boolean performOk() {
+		if (!super.performOk()) {
+			return false;
+		}
+
+		ScopedPreferenceStore store = (ScopedPreferenceStore)getPreferenceStore();
+
+		// Property pages are not saved by the dialog
+		if (store.needsSaving()) {
+			try {
+				store.save();
+			}
+			catch (IOException e) {
+				Activator.getDefault().getLog().log(
+					new Status(IStatus.ERROR, Activator.PLUGIN_ID, "Cannot save the project settings", e));
+
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.eclipse.ui.IWorkbenchPropertyPage#setElement(org.eclipse.core.runtime.IAdaptable)
+	 */
+	@Override
+	public void setElement(IAdaptable element) {
+		_element = element;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.eclipse.jface.preference.PreferencePage#doGetPreferenceStore()
+	 */
+	@Override
+	protected IPreferenceStore doGetPreferenceStore() {
+		IProject project = _element.getAdapter(IProject.class);
+
+		return new ScopedPreferenceStore(new ProjectScope(project), Activator.PLUGIN_ID);
+	}
+
+	private IAdaptable _element;
+
+}
@@ -18,10 +18,12 @@ package com.ixenit.membersort.preferences.dialog;
 import static com.ixenit.membersort.preferences.PreferenceConstants.*;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import org.eclipse.jface.dialogs.TitleAreaDialog;
 import org.eclipse.swt.SWT;
+import org.eclipse.swt.events.SelectionAdapter;
 import org.eclipse.swt.events.SelectionEvent;
 import org.eclipse.swt.events.SelectionListener;
 import org.eclipse.swt.layout.GridData;
@@ -31,7 +33,9 @@ import org.eclipse.swt.widgets.Composite;
 import org.eclipse.swt.widgets.Control;
 import org.eclipse.swt.widgets.Label;
 import org.eclipse.swt.widgets.Shell;
+import org.eclipse.swt.widgets.Text;
 
+import com.ixenit.membersort.engine.Rule;
 import com.ixenit.membersort.preferences.PreferenceConstants;
 
 /**
@@ -83,6 +87,7 @@ public class ModifierDialog extends TitleAreaDialog {
 		_createVisibiltyChooser(container);
 		_createModifierChooser(container);
 		_createTypeChooser(container);
+		_createPatternFields(container);
 
 		return area;
 	}
@@ -94,23 +99,65 @@ public class ModifierDialog extends TitleAreaDialog {
 
 	@Override
 	protected void okPressed() {
-		_convertSelectedOptions();
+		String result = _convertSelectedOptions();
+
+		// The rules are stored separated by commas
+		if (result.contains(PreferenceConstants.SEPARATOR)) {
+			setErrorMessage("The rule cannot contain '" + PreferenceConstants.SEPARATOR + "'");
+
+			return;
+		}
+
+		if (Rule.parse(result) == null) {
+			setErrorMessage("Invalid name pattern or annotation");
+
+			return;
+		}
+
+		_result = result;
 
 		super.okPressed();
 	}
 
-	private void _convertSelectedOptions() {
-		StringBuilder sb = new StringBuilder();
+	private String _convertSelectedOptions() {
+		String annotations = _annotationsText.getText().trim();
+		String namePattern = _namePatternText.getText().trim();
+
+		boolean anyVisibility = _ANY_VISIBILITY.equals(_visibility);
 
-		sb.append(_visibility);
+		List<String> words = new ArrayList<>();
 
-		for (String m : _modifiers) {
-			sb.append(PreferenceConstants.VISIBLE_SEPARATOR).append(m);
+		if (!anyVisibility) {
+			words.add(_visibility);
 		}
 
-		sb.append(PreferenceConstants.VISIBLE_SEPARATOR).append(_type);
+		// A plain rule without visibility would mean package visibility
+		if (_anyModifiers || (anyVisibility && annotations.isEmpty() && namePattern.isEmpty())) {
+			words.add(Rule.ANY);
+		}
+
+		words.addAll(_modifiers);
+
+		for (String annotation : annotations.split("\\s+")) {
+			if (!annotation.isEmpty()) {
+				words.add(annotation.startsWith(Rule.ANNOTATION_PREFIX) ? annotation
+					: Rule.ANNOTATION_PREFIX + annotation);
+			}
+		}
+
+		words.add(_type);
+
+		if (!namePattern.isEmpty()) {
+			words.add(Rule.PATTERN_DELIMITER + namePattern + Rule.PATTERN_DELIMITER);
+		}
+
+		StringBuilder sb = new StringBuilder();
+
+		for (String word : words) {
+			sb.append(PreferenceConstants.VISIBLE_SEPARATOR).append(word);
+		}
 
-		_result = sb.toString();
+		return sb.substring(1);
 	}
 
 	private void _createModifierChooser(Composite container) {
@@ -139,6 +186,21 @@ public class ModifierDialog extends TitleAreaDialog {
 		};
 
 		_createOptions(container, modifierSelectionListener, "Modifiers:", MODIFIERS, SWT.CHECK);
+
+		new Label(container, SWT.NONE);
+
+		final Button anyModifiersButton = new Button(container, SWT.CHECK);
+
+		anyModifiersButton.setText("Also match members with other modifiers (" + Rule.ANY + ")");
+		anyModifiersButton.setSelection(_anyModifiers);
+		anyModifiersButton.addSelectionListener(new SelectionAdapter() {
+
+			@Override
+			public void widgetSelected(SelectionEvent event) {
+				_anyModifiers = anyModifiersButton.getSelection();
+			}
+
+		});
 	}
 
 	private void _createOptions(
@@ -166,6 +228,24 @@ public class ModifierDialog extends TitleAreaDialog {
 
 	}
 
+	private void _createPatternFields(Composite container) {
+		Label annotationsLabel = new Label(container, SWT.NONE);
+		annotationsLabel.setText("Annotations:");
+
+		_annotationsText = new Text(container, SWT.BORDER);
+		_annotationsText.setLayoutData(new GridData(SWT.FILL, SWT.CENTER, true, false));
+		_annotationsText.setMessage("e.g. @Test");
+		_annotationsText.setText(_initialAnnotations);
+
+		Label namePatternLabel = new Label(container, SWT.NONE);
+		namePatternLabel.setText("Name pattern:");
+
+		_namePatternText = new Text(container, SWT.BORDER);
+		_namePatternText.setLayoutData(new GridData(SWT.FILL, SWT.CENTER, true, false));
+		_namePatternText.setMessage("regular expression, e.g. ^(get|is)[A-Z]");
+		_namePatternText.setText(_initialNamePattern);
+	}
+
 	private void _createTypeChooser(Composite container) {
 		CustomSelectionListener typeSelectionListener = new CustomSelectionListener() {
 
@@ -203,41 +283,61 @@ public class ModifierDialog extends TitleAreaDialog {
 
 		};
 
-		_createOptions(container, visibilitySelectionListener, "Visibility:", VISIBILITIES,
-			SWT.RADIO);
+		String[] visibilities = Arrays.copyOf(VISIBILITIES, VISIBILITIES.length + 1);
+		visibilities[VISIBILITIES.length] = _ANY_VISIBILITY;
+
+		_createOptions(container, visibilitySelectionListener, "Visibility:", visibilities, SWT.RADIO);
 	}
 
 	private void _initOptions(String lastState) {
 		_modifiers = new ArrayList<>();
 
+		Rule rule = (lastState == null) ? null : Rule.parse(lastState);
+
 		// The new button was pressed before
-		if (lastState == null) {
+		if (rule == null) {
 			_visibility = VISIBILITIES[0];
 			_type = TYPES[0];
 
 			return;
 		}
 
-		String[] state = lastState.split(PreferenceConstants.VISIBLE_SEPARATOR);
+		_visibility = (rule.getVisibility() != null) ? rule.getVisibility() : _ANY_VISIBILITY;
+		_modifiers.addAll(rule.getModifiers());
+		_anyModifiers = rule.isAnyModifiers();
+		_type = rule.getType();
 
-		_visibility = state[0];
+		StringBuilder annotations = new StringBuilder();
 
-		for (int i = 1; i < state.length - 1; i++) {
-			_modifiers.add(state[i]);
+		for (String annotation : rule.getAnnotations()) {
+			annotations.append(PreferenceConstants.VISIBLE_SEPARATOR).append(Rule.ANNOTATION_PREFIX).append(annotation);
 		}
 
-		_type = state[state.length - 1];
+		_initialAnnotations = annotations.toString().trim();
+		_initialNamePattern = (rule.getNamePattern() != null) ? rule.getNamePattern() : "";
 	}
 
+	private static final String _ANY_VISIBILITY = "any";
+
+	private Text _annotationsText;
+
+	private boolean _anyModifiers;
+
+	private String _initialAnnotations = "";
+
+	private String _initialNamePattern = "";
+
 	// checkbox: static, final,
 	private List<String> _modifiers;
 
+	private Text _namePatternText;
+
 	private String _result;
 
 	// radio: class, method, variable, enum, init
 	private String _type;
 
-	// radio: public, package, protected, private
+	// radio: public, package, protected, private, any
 	private String _visibility;
 
 }
\ No newline at end of file
@@ -0,0 +1,156 @@
+/*******************************************************************************
+ * Copyright 2015 Ixenit
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *******************************************************************************/
+package com.ixenit.membersort.statistics;
+
+import java.util.Locale;
+
+import org.eclipse.core.runtime.PerformanceStats;
+import org.eclipse.jdt.core.ICompilationUnit;
+
+import com.ixenit.membersort.Activator;
+import com.ixenit.membersort.statistics.SortStatistics.Phase;
+
+/**
+ * Reports the phases of sorting every unit as Eclipse performance events,
+ * e.g. <code>MemberSort/perf/parse</code>.
+ * <p>
+ * The events are only recorded when the platform runs with performance
+ * tracing, i.e. with <code>-debug</code> and the
+ * <code>org.eclipse.core.runtime/perf</code> option, and the option of the
+ * event is set in the <code>.options</code> file to the threshold in
+ * milliseconds. Runs slower than the threshold are reported as failures,
+ * with the path, the number of members and of moved members of the unit.
+ * Otherwise recording is a check of a constant.
+ * </p>
+ * <p>
+ * The phases are also emitted as Java Flight Recorder events
+ * (<code>MemberSort.SortPhase</code>) when the JVM has the
+ * <code>jdk.jfr</code> module and a recording enables them, timed from
+ * {@link #begin(Phase)} to {@link #record}. The events are in the
+ * <code>membersort-jfr.jar</code> library, loaded reflectively, so the
+ * plug-in still runs on a JVM without JFR and recording costs nothing
+ * there.
+ * </p>
+ *
+ * @author Benjámin Hajnal <benjamin.hajnal@ixenit.com>
+ *
+ */
+public final class PerformanceEvents {
+
+	/**
+	 * Marks the start of a phase in the current thread, the phase is
+	 * recorded by {@link #record} at its end.
+	 *
+	 * @param phase
+	 *        the phase
+	 */
+	public static void begin(Phase phase) {
+		if (_JFR != null) {
+			_JFR.begin(phase);
+		}
+	}
+
+	/**
+	 * Returns the name of the event of the given phase.
+	 *
+	 * @param phase
+	 *        the phase
+	 * @return the name of the event, also the name of its option
+	 */
+	public static String getEvent(Phase phase) {
+		return Activator.PLUGIN_ID + "/perf/" + phase.name().toLowerCase(Locale.ROOT);
+	}
+
+	/**
+	 * Records a phase of sorting the given unit at its end, if its event is
+	 * enabled.
+	 *
+	 * @param phase
+	 *        the phase
+	 * @param nanos
+	 *        the elapsed time in nanoseconds
+	 * @param unit
+	 *        the unit
+	 * @param members
+	 *        the number of members of the unit, negative if not known
+	 * @param moved
+	 *        the number of moved members, negative if not known
+	 */
+	public static void record(Phase phase, long nanos, ICompilationUnit unit, int members, int moved) {
+		if (_JFR != null) {
+			_JFR.end(phase, unit, members, moved);
+		}
+
+		if (!_ENABLED[phase.ordinal()]) {
+			return;
+		}
+
+		StringBuilder context = new StringBuilder(unit.getPath().toString());
+
+		if (members >= 0) {
+			context.append(": ").append(members).append(" members");
+		}
+
+		if (moved >= 0) {
+			context.append(", ").append(moved).append(" moved");
+		}
+
+		PerformanceStats stats = PerformanceStats.getStats(getEvent(phase), Activator.PLUGIN_ID);
+
+		// The workers of a run share the stats of an event
+		synchronized (stats) {
+			stats.addRun(nanos / 1000000, context.toString());
+		}
+	}
+
+	private static boolean[] _computeEnabled() {
+		Phase[] phases = Phase.values();
+
+		boolean[] enabled = new boolean[phases.length];
+
+		if (PerformanceStats.ENABLED) {
+			for (Phase phase : phases) {
+				enabled[phase.ordinal()] = PerformanceStats.isEnabled(getEvent(phase));
+			}
+		}
+
+		return enabled;
+	}
+
+	private static PhaseRecorder _loadJfr() {
+		try {
+			return (PhaseRecorder)Class.forName(_JFR_RECORDER).getDeclaredConstructor().newInstance();
+		}
+		catch (ReflectiveOperationException | LinkageError e) {
+
+			// No jdk.jfr module, or a JVM older than the events
+			return null;
+		}
+	}
+
+	private PerformanceEvents() {
+		// Only static methods
+	}
+
+	// Read once, the tracing options are given at startup
+	private static final boolean[] _ENABLED = _computeEnabled();
+
+	private static final String _JFR_RECORDER = "com.ixenit.membersort.statistics.JfrPhaseRecorder";
+
+	// Emits the JFR events, null without the jdk.jfr module
+	private static final PhaseRecorder _JFR = _loadJfr();
+
+}
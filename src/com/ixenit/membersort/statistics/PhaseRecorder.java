@@ -0,0 +1,55 @@
+/*******************************************************************************
+ * Copyright 2015 Ixenit
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *******************************************************************************/
+package com.ixenit.membersort.statistics;
+
+import org.eclipse.jdt.core.ICompilationUnit;
+
+import com.ixenit.membersort.statistics.SortStatistics.Phase;
+
+/**
+ * Records the phases of sorting as events of a profiler, implemented by the
+ * Java Flight Recorder events of the <code>membersort-jfr.jar</code>
+ * library (see {@link PerformanceEvents}).
+ *
+ * @author Benjámin Hajnal <benjamin.hajnal@ixenit.com>
+ *
+ */
+interface PhaseRecorder {
+
+	/**
+	 * Marks the start of a phase in the current thread.
+	 *
+	 * @param phase
+	 *        the phase
+	 */
+	void begin(Phase phase);
+
+	/**
+	 * Records the phase of sorting the given unit begun last in the current
+	 * thread, if any.
+	 *
+	 * @param phase
+	 *        the phase
+	 * @param unit
+	 *        the unit
+	 * @param members
+	 *        the number of members of the unit, negative if not known
+	 * @param moved
+	 *        the number of moved members, negative if not known
+	 */
+	void end(Phase phase, ICompilationUnit unit, int members, int moved);
+
+}
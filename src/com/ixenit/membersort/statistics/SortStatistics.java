@@ -0,0 +1,272 @@
+/*******************************************************************************
+ * Copyright 2015 Ixenit
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *******************************************************************************/
+package com.ixenit.membersort.statistics;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counters and per-phase timers of a single sort run.
+ * <p>
+ * A run only collects statistics if it is enabled in the preferences,
+ * otherwise no instance is created and the instrumented code only checks
+ * for <code>null</code>. The workers of a run update the same instance, it
+ * is thread-safe.
+ * </p>
+ *
+ * @author Benjámin Hajnal <benjamin.hajnal@ixenit.com>
+ *
+ */
+public final class SortStatistics {
+
+	/**
+	 * The phases of sorting a unit.
+	 */
+	public enum Phase {
+
+		/**
+		 * Parsing the unit into an AST.
+		 */
+		PARSE("Parse"),
+
+		/**
+		 * Computing the rank and the name of every member.
+		 */
+		CLASSIFY("Classify"),
+
+		/**
+		 * Checking the order, in check only runs.
+		 */
+		CHECK("Check"),
+
+		/**
+		 * Computing the edits.
+		 */
+		SORT("Sort"),
+
+		/**
+		 * Applying the edits to the buffer of the unit.
+		 */
+		APPLY("Apply"),
+
+		/**
+		 * Writing the buffer to the file.
+		 */
+		COMMIT("Commit");
+
+		Phase(String label) {
+			_label = label;
+		}
+
+		/**
+		 * Returns the name of the phase shown to the user.
+		 *
+		 * @return the label
+		 */
+		public String getLabel() {
+			return _label;
+		}
+
+		private final String _label;
+
+	}
+
+	/**
+	 * @param name
+	 *        the name of the run, e.g. the name of its job
+	 */
+	public SortStatistics(String name) {
+		_name = name;
+	}
+
+	/**
+	 * Adds the time spent in the given phase.
+	 *
+	 * @param phase
+	 *        the phase
+	 * @param nanos
+	 *        the elapsed time in nanoseconds
+	 */
+	public void addTime(Phase phase, long nanos) {
+		_times.addAndGet(phase.ordinal(), nanos);
+		_counts.incrementAndGet(phase.ordinal());
+	}
+
+	/**
+	 * Adds the members of a processed unit.
+	 *
+	 * @param members
+	 *        the number of members of the unit
+	 * @param moved
+	 *        the number of members moved, 0 if not known
+	 * @param unmatched
+	 *        the number of members matching no rule by kind
+	 */
+	public void addUnit(int members, int moved, Map<String, Integer> unmatched) {
+		_units.incrementAndGet();
+		_members.addAndGet(members);
+		_moved.addAndGet(moved);
+
+		if (unmatched.isEmpty()) {
+			return;
+		}
+
+		synchronized (_unmatched) {
+			for (Entry<String, Integer> entry : unmatched.entrySet()) {
+				Long count = _unmatched.get(entry.getKey());
+
+				_unmatched.put(entry.getKey(), (count == null) ? entry.getValue() : count + entry.getValue());
+			}
+		}
+	}
+
+	/**
+	 * Returns how many times the given phase was run.
+	 *
+	 * @param phase
+	 *        the phase
+	 * @return the number of times
+	 */
+	public long getCount(Phase phase) {
+		return _counts.get(phase.ordinal());
+	}
+
+	/**
+	 * Returns the number of classified members.
+	 *
+	 * @return the number of members
+	 */
+	public long getMembers() {
+		return _members.get();
+	}
+
+	/**
+	 * Returns the number of members moved by the sorter moving only the
+	 * members out of place (see
+	 * {@link com.ixenit.membersort.engine.MemberSorter}).
+	 *
+	 * @return the number of moved members
+	 */
+	public long getMoved() {
+		return _moved.get();
+	}
+
+	/**
+	 * Returns the name of the run.
+	 *
+	 * @return the name
+	 */
+	public String getName() {
+		return _name;
+	}
+
+	/**
+	 * Returns the total time spent in the given phase.
+	 *
+	 * @param phase
+	 *        the phase
+	 * @return the time in nanoseconds, summed over the worker threads
+	 */
+	public long getTime(Phase phase) {
+		return _times.get(phase.ordinal());
+	}
+
+	/**
+	 * Returns the kinds of members which matched no rule.
+	 *
+	 * @return a copy of the number of members by kind
+	 */
+	public Map<String, Long> getUnmatched() {
+		synchronized (_unmatched) {
+			return new TreeMap<>(_unmatched);
+		}
+	}
+
+	/**
+	 * Returns the number of processed units.
+	 *
+	 * @return the number of units
+	 */
+	public long getUnits() {
+		return _units.get();
+	}
+
+	/**
+	 * Returns the wall time of the run.
+	 *
+	 * @return the time in nanoseconds between creating the statistics and
+	 *         the last call of {@link #stop()}
+	 */
+	public long getWallTime() {
+		return _wallTime;
+	}
+
+	/**
+	 * Records the end of the run.
+	 */
+	public void stop() {
+		_wallTime = System.nanoTime() - _start;
+	}
+
+	/**
+	 * Returns the statistics in a few lines of text, for the log.
+	 */
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+
+		sb.append(String.format(
+			Locale.ROOT, "%s: %d units, %d members, %d moved in %.1f ms", _name, getUnits(), getMembers(),
+			getMoved(), _wallTime / 1e6));
+
+		for (Phase phase : Phase.values()) {
+			if (getCount(phase) > 0) {
+				sb.append(String.format(
+					Locale.ROOT, "%n  %-8s %8d x %10.1f ms", phase.getLabel(), getCount(phase),
+					getTime(phase) / 1e6));
+			}
+		}
+
+		for (Entry<String, Long> entry : getUnmatched().entrySet()) {
+			sb.append(String.format(Locale.ROOT, "%n  Matching no rule: %s x %d", entry.getKey(), entry.getValue()));
+		}
+
+		return sb.toString();
+	}
+
+	private volatile long _wallTime;
+
+	private final AtomicLongArray _counts = new AtomicLongArray(Phase.values().length);
+
+	private final AtomicLong _members = new AtomicLong();
+
+	private final AtomicLong _moved = new AtomicLong();
+
+	private final String _name;
+
+	private final long _start = System.nanoTime();
+
+	private final AtomicLongArray _times = new AtomicLongArray(Phase.values().length);
+
+	private final Map<String, Long> _unmatched = new TreeMap<>();
+
+	private final AtomicLong _units = new AtomicLong();
+
+}
@@ -0,0 +1,170 @@
+/*******************************************************************************
+ * Copyright 2015 Ixenit
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *******************************************************************************/
+package com.ixenit.membersort.statistics;
+
+import java.util.Locale;
+import java.util.Map.Entry;
+
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.layout.GridData;
+import org.eclipse.swt.layout.GridLayout;
+import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.Label;
+import org.eclipse.swt.widgets.Table;
+import org.eclipse.swt.widgets.TableColumn;
+import org.eclipse.swt.widgets.TableItem;
+import org.eclipse.ui.part.ViewPart;
+
+import com.ixenit.membersort.Activator;
+import com.ixenit.membersort.statistics.SortStatistics.Phase;
+
+/**
+ * Shows the statistics of the last sort run which collected them: the time
+ * spent in every phase and the members matching no rule.
+ *
+ * @author Benjámin Hajnal <benjamin.hajnal@ixenit.com>
+ *
+ */
+public class StatisticsView extends ViewPart {
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.eclipse.ui.part.WorkbenchPart#createPartControl(org.eclipse.swt.widgets.Composite)
+	 */
+	@Override
+	public void createPartControl(Composite parent) {
+		parent.setLayout(new GridLayout());
+
+		_summary = new Label(parent, SWT.WRAP);
+		_summary.setLayoutData(new GridData(SWT.FILL, SWT.TOP, true, false));
+
+		_table = new Table(parent, SWT.BORDER | SWT.FULL_SELECTION);
+		_table.setLayoutData(new GridData(SWT.FILL, SWT.FILL, true, true));
+		_table.setHeaderVisible(true);
+		_table.setLinesVisible(true);
+
+		for (String title : _COLUMNS) {
+			new TableColumn(_table, SWT.NONE).setText(title);
+		}
+
+		Activator.getDefault().addStatisticsListener(_listener);
+
+		_update();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.eclipse.ui.part.WorkbenchPart#dispose()
+	 */
+	@Override
+	public void dispose() {
+		Activator.getDefault().removeStatisticsListener(_listener);
+
+		super.dispose();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.eclipse.ui.part.WorkbenchPart#setFocus()
+	 */
+	@Override
+	public void setFocus() {
+		_table.setFocus();
+	}
+
+	private void _addRow(String... values) {
+		new TableItem(_table, SWT.NONE).setText(values);
+	}
+
+	private void _update() {
+		SortStatistics statistics = Activator.getDefault().getLastStatistics();
+
+		_table.removeAll();
+
+		if (statistics == null) {
+			_summary.setText("No statistics yet. Enable collecting them in the MemberSort preferences and sort.");
+		}
+		else {
+			_summary.setText(String.format(
+				Locale.ROOT, "%s: %d units, %d members, %d moved in %.1f ms", statistics.getName(),
+				statistics.getUnits(), statistics.getMembers(), statistics.getMoved(),
+				statistics.getWallTime() / 1e6));
+
+			long total = 0;
+
+			for (Phase phase : Phase.values()) {
+				total += statistics.getTime(phase);
+			}
+
+			for (Phase phase : Phase.values()) {
+				long count = statistics.getCount(phase);
+
+				if (count == 0) {
+					continue;
+				}
+
+				long time = statistics.getTime(phase);
+
+				_addRow(
+					phase.getLabel(), Long.toString(count), String.format(Locale.ROOT, "%.1f", time / 1e6),
+					String.format(Locale.ROOT, "%.0f%%", (total > 0) ? time * 100.0 / total : 0));
+			}
+
+			for (Entry<String, Long> entry : statistics.getUnmatched().entrySet()) {
+				_addRow("Matching no rule: " + entry.getKey(), entry.getValue().toString(), "", "");
+			}
+		}
+
+		for (TableColumn column : _table.getColumns()) {
+			column.pack();
+		}
+
+		_summary.getParent().layout();
+	}
+
+	private static final String[] _COLUMNS = { "Phase", "Count", "Time (ms)", "Share" };
+
+	private Label _summary;
+
+	private Table _table;
+
+	// Published by the sorting jobs, shown in the UI thread
+	private final Runnable _listener = new Runnable() {
+
+		@Override
+		public void run() {
+			if (_table == null || _table.isDisposed()) {
+				return;
+			}
+
+			_table.getDisplay().asyncExec(new Runnable() {
+
+				@Override
+				public void run() {
+					if (!_table.isDisposed()) {
+						_update();
+					}
+				}
+
+			});
+		}
+
+	};
+
+}
@@ -0,0 +1,68 @@
+/*******************************************************************************
+ * Copyright 2015 Ixenit
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *******************************************************************************/
+package com.ixenit.membersort.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.junit.Test;
+
+/**
+ * Tests of {@link MemberComparator}.
+ *
+ * @author Benjámin Hajnal <benjamin.hajnal@ixenit.com>
+ *
+ */
+public class MemberComparatorTest {
+
+	@Test
+	public void testComputeKeysClassifiesTheMembersOfEveryList() {
+		CompilationUnit unit = _SORTER.parse(
+			"class A {\n" +
+			"	int b;\n" +
+			"	void m() {\n" +
+			"		int local = 0;\n" +
+			"		new Runnable() { public void run() {} };\n" +
+			"		class Local { int c; }\n" +
+			"	}\n" +
+			"	static class Inner { void n() {} }\n" +
+			"}\n");
+
+		MemberComparator comparator = new MemberComparator(_RULE_SET);
+		comparator.computeKeys(unit);
+
+		// A, b, m, Inner, n, run and c, a local class is a statement itself
+		assertEquals(7, comparator.getMemberCount());
+	}
+
+	@Test
+	public void testUnmatchedMembersAreCounted() {
+		RuleSet ruleSet = RuleSet.compile(new String[] { "public method" }, true);
+
+		MemberComparator comparator = new MemberComparator(ruleSet);
+		comparator.computeKeys(_SORTER.parse("class A { public void a() {} protected void b() {} private int c; }"));
+
+		assertEquals(Integer.valueOf(1), comparator.getUnmatched().get("protected MethodDeclaration"));
+		assertEquals(Integer.valueOf(1), comparator.getUnmatched().get("private FieldDeclaration"));
+		assertTrue(!comparator.getUnmatched().containsKey("public MethodDeclaration"));
+	}
+
+	private static final RuleSet _RULE_SET = RuleSet.compile(RuleSet.DEFAULT_ORDER, true);
+
+	private static final MemberSorter _SORTER = new MemberSorter(_RULE_SET);
+
+}
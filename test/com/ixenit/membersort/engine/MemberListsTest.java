@@ -0,0 +1,117 @@
+/*******************************************************************************
+ * Copyright 2015 Ixenit
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *******************************************************************************/
+package com.ixenit.membersort.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.jdt.core.JavaCore;
+import org.eclipse.jdt.core.dom.AST;
+import org.eclipse.jdt.core.dom.ASTNode;
+import org.eclipse.jdt.core.dom.ASTParser;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.junit.Test;
+
+/**
+ * Tests of {@link MemberLists}.
+ *
+ * @author Benjámin Hajnal <benjamin.hajnal@ixenit.com>
+ *
+ */
+public class MemberListsTest {
+
+	@Test
+	public void testAnonymousClassAfterLambdaArgumentIsFound() {
+		assertTrue(_mayHaveClassesInBodies(
+			"class A { void m() { new Foo(() -> { g(); }) { private int b; public int a; }; } }"));
+	}
+
+	@Test
+	public void testAnonymousClassAfterStringArgumentIsFound() {
+		assertTrue(_mayHaveClassesInBodies(
+			"class A { void m() { new Thread(\";\") { private int b; public int a; }.start(); } }"));
+	}
+
+	@Test
+	public void testAnonymousClassInLambdaOfFieldIsFound() {
+		assertTrue(_mayHaveClassesInBodies("class A { Runnable r = () -> { new Object() {}; }; }"));
+	}
+
+	@Test
+	public void testCollectReturnsTheUnitThenTheTypesInSourceOrder() {
+		CompilationUnit unit = new MemberSorter(RuleSet.compile(RuleSet.DEFAULT_ORDER, true)).parse(
+			"class A { class B { Object o = new Object() {}; } enum C {} } interface D {}");
+
+		List<String> names = new ArrayList<>();
+
+		for (ASTNode container : MemberLists.collect(unit)) {
+			names.add(MemberLists.getName(container));
+		}
+
+		assertEquals(Arrays.asList(MemberLists.TOP_LEVEL, "A", "A.B", "A.B.(anonymous)", "A.C", "D"), names);
+
+		// Anonymous classes have no unique name
+		assertEquals(
+			2, MemberLists.find(unit, Arrays.asList(MemberLists.TOP_LEVEL, "A.B.(anonymous)", "A.C")).size());
+	}
+
+	@Test
+	public void testLocalTypesAreFound() {
+		assertTrue(_mayHaveClassesInBodies("class A { void m() { class L {} } }"));
+		assertTrue(_mayHaveClassesInBodies("class A { A() { enum E { X } } }"));
+	}
+
+	@Test
+	public void testOtherBodiesHaveNoClasses() {
+		assertFalse(_mayHaveClassesInBodies(
+			"class A {\n" +
+			"	Object o = new Object() {};\n" +
+			"	void m() {\n" +
+			"		Class<?> c = String.class;\n" +
+			"		int[] a = new int[] { 1 };\n" +
+			"		if (new Object().equals(c)) { g(\"class\"); }\n" +
+			"		// new Object() {}\n" +
+			"		Runnable r = () -> { new Object(); };\n" +
+			"	}\n" +
+			"}"));
+	}
+
+	/**
+	 * Parses the given source without method bodies, as the structural check
+	 * of the plug-in does.
+	 */
+	private static boolean _mayHaveClassesInBodies(String source) {
+		ASTParser parser = ASTParser.newParser(AST.JLS8);
+
+		Map<String, String> options = JavaCore.getOptions();
+
+		JavaCore.setComplianceOptions(JavaCore.VERSION_1_8, options);
+
+		parser.setKind(ASTParser.K_COMPILATION_UNIT);
+		parser.setCompilerOptions(options);
+		parser.setIgnoreMethodBodies(true);
+		parser.setSource(source.toCharArray());
+
+		return MemberLists.mayHaveClassesInBodies((CompilationUnit)parser.createAST(null), source);
+	}
+
+}
@@ -0,0 +1,210 @@
+/*******************************************************************************
+ * Copyright 2015 Ixenit
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *******************************************************************************/
+package com.ixenit.membersort.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.eclipse.jdt.core.JavaCore;
+import org.eclipse.jdt.core.dom.AST;
+import org.eclipse.jdt.core.dom.ASTParser;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.junit.Test;
+
+/**
+ * Tests of {@link MemberSorter}.
+ *
+ * @author Benjámin Hajnal <benjamin.hajnal@ixenit.com>
+ *
+ */
+public class MemberSorterTest {
+
+	@Test
+	public void testCommentsMoveWithTheirMembers() {
+		String sorted = _SORTER.sort(
+			"class A {\n" +
+			"	// The field\n" +
+			"	private int b;\n" +
+			"\n" +
+			"	/** The method */\n" +
+			"	public void a() {}\n" +
+			"}\n");
+
+		assertTrue(sorted, sorted.indexOf("/** The method */\n\tpublic void a()") >= 0);
+		assertTrue(sorted, sorted.indexOf("// The field\n\tprivate int b;") >= 0);
+		assertTrue(sorted, sorted.indexOf("public void a()") < sorted.indexOf("private int b;"));
+	}
+
+	@Test
+	public void testMovedMembersAreIndentedLikeTheSource() {
+		String sorted = _SORTER.sort(
+			"class A {\n" +
+			"    private int b;\n" +
+			"\n" +
+			"    public void a() {\n" +
+			"        b = 1;\n" +
+			"    }\n" +
+			"\n" +
+			"    class B {\n" +
+			"        private int c;\n" +
+			"\n" +
+			"        public void d() {}\n" +
+			"    }\n" +
+			"}\n");
+
+		assertTrue(sorted, sorted.indexOf("\n    private int b;") >= 0);
+		assertTrue(sorted, sorted.indexOf("\n        private int c;") >= 0);
+		assertTrue(sorted, sorted.indexOf('\t') < 0);
+	}
+
+	@Test
+	public void testOnlyTheMembersOutOfPlaceAreMoved() {
+		String source =
+			"class A {\n" +
+			"	public void a() {}\n" +
+			"	private int z;\n" +
+			"	public void b() {}\n" +
+			"	public void c() {}\n" +
+			"	public void d() {}\n" +
+			"}\n";
+
+		CompilationUnit unit = _SORTER.parse(source);
+
+		MemberComparator comparator = new MemberComparator(_RULE_SET);
+		comparator.computeKeys(unit);
+
+		_SORTER.computeEdits(unit, source, comparator);
+
+		assertEquals(1, comparator.getMovedCount());
+	}
+
+	@Test
+	public void testRandomOrdersAreSortedWithTheFewestMoves() {
+		Random random = new Random(42);
+
+		for (int run = 0; run < 50; run++) {
+			int size = 1 + random.nextInt(30);
+
+			List<Integer> order = new ArrayList<>();
+
+			for (int i = 0; i < size; i++) {
+				order.add(i);
+			}
+
+			Collections.shuffle(order, random);
+
+			StringBuilder sb = new StringBuilder("class A {\n");
+
+			for (int i : order) {
+				sb.append("\tvoid m").append((char)('a' + i / 26)).append((char)('a' + i % 26)).append("() {}\n");
+			}
+
+			String source = sb.append("}\n").toString();
+
+			CompilationUnit unit = _SORTER.parse(source);
+
+			MemberComparator comparator = new MemberComparator(_RULE_SET);
+			comparator.computeKeys(unit);
+
+			_SORTER.computeEdits(unit, source, comparator);
+
+			assertEquals(size - _getLongestIncreasingLength(order), comparator.getMovedCount());
+
+			String sorted = _SORTER.sort(source);
+
+			assertTrue(_SORTER.check(sorted).isEmpty());
+			assertEquals(source.length(), sorted.length());
+		}
+	}
+
+	@Test
+	public void testSortingIsIdempotent() {
+		String source =
+			"class A {\n" +
+			"	private static final int C = 0;\n" +
+			"	private int b;\n" +
+			"	static class Inner {}\n" +
+			"	public A() {}\n" +
+			"	public void a() {\n" +
+			"		new Runnable() { public void run() {} private int x; public int y; };\n" +
+			"	}\n" +
+			"	enum E { X }\n" +
+			"	public static final int D = 1;\n" +
+			"}\n";
+
+		String sorted = _SORTER.sort(source);
+
+		assertTrue(sorted != source);
+		assertSame(sorted, _SORTER.sort(sorted));
+		assertNull(_SORTER.computeEdits(sorted));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testSyntaxErrorsAreRejected() {
+		_SORTER.sort("class A { void a( }");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testSyntaxErrorsOfParsedUnitsAreRejected() {
+		String source = "class A { private int b; public void a() { b = ; } }";
+
+		ASTParser parser = ASTParser.newParser(AST.JLS8);
+
+		Map<String, String> options = JavaCore.getOptions();
+
+		JavaCore.setComplianceOptions(JavaCore.VERSION_1_8, options);
+
+		parser.setKind(ASTParser.K_COMPILATION_UNIT);
+		parser.setCompilerOptions(options);
+		parser.setSource(source.toCharArray());
+
+		// Parsed with recovery, as by the plug-in
+		_SORTER.computeEdits((CompilationUnit)parser.createAST(null), source);
+	}
+
+	private static int _getLongestIncreasingLength(List<Integer> values) {
+		int[] lengths = new int[values.size()];
+
+		int longest = 0;
+
+		for (int i = 0; i < values.size(); i++) {
+			lengths[i] = 1;
+
+			for (int j = 0; j < i; j++) {
+				if (values.get(j) < values.get(i)) {
+					lengths[i] = Math.max(lengths[i], lengths[j] + 1);
+				}
+			}
+
+			longest = Math.max(longest, lengths[i]);
+		}
+
+		return longest;
+	}
+
+	private static final RuleSet _RULE_SET = RuleSet.compile(RuleSet.DEFAULT_ORDER, true);
+
+	private static final MemberSorter _SORTER = new MemberSorter(_RULE_SET);
+
+}
@@ -0,0 +1,88 @@
+/*******************************************************************************
+ * Copyright 2015 Ixenit
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *******************************************************************************/
+package com.ixenit.membersort.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Tests of {@link OrderChecker}.
+ *
+ * @author Benjámin Hajnal <benjamin.hajnal@ixenit.com>
+ *
+ */
+public class OrderCheckerTest {
+
+	@Test
+	public void testFirstOutOfOrderMemberOfEveryTypeIsReported() {
+		List<Violation> violations = _SORTER.check(
+			"class A {\n" +
+			"	private int b;\n" +
+			"	public void a() {}\n" +
+			"	private int c;\n" +
+			"	public void d() {}\n" +
+			"	static class Inner {\n" +
+			"		void y() {}\n" +
+			"		void x() {}\n" +
+			"	}\n" +
+			"}\n");
+
+		assertEquals(2, violations.size());
+
+		Violation violation = violations.get(0);
+
+		assertEquals("A", violation.getType());
+		assertEquals("a", violation.getMember());
+		assertEquals("b", violation.getPrevious());
+		assertEquals(3, violation.getLine());
+
+		assertEquals("A.Inner", violations.get(1).getType());
+		assertEquals("x", violations.get(1).getMember());
+	}
+
+	@Test
+	public void testMembersOfAnonymousClassesAreChecked() {
+		List<Violation> violations = _SORTER.check(
+			"class A {\n" +
+			"	void m() {\n" +
+			"		new Object() { private int b; public int a; };\n" +
+			"	}\n" +
+			"}\n");
+
+		assertEquals(1, violations.size());
+		assertEquals("A.(anonymous)", violations.get(0).getType());
+	}
+
+	@Test
+	public void testSortedOutputPassesTheCheck() {
+		String source = "class A { private int c; public void b() {} public static void a() {} }";
+
+		assertEquals(1, _SORTER.check(source).size());
+		assertTrue(_SORTER.check(_SORTER.sort(source)).isEmpty());
+	}
+
+	@Test
+	public void testSortedUnitHasNoViolation() {
+		assertTrue(_SORTER.check("class A { public void a() {} public void b() {} private int c; }").isEmpty());
+	}
+
+	private static final MemberSorter _SORTER = new MemberSorter(RuleSet.compile(RuleSet.DEFAULT_ORDER, true));
+
+}
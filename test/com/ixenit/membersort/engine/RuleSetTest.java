@@ -0,0 +1,117 @@
+/*******************************************************************************
+ * Copyright 2015 Ixenit
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *******************************************************************************/
+package com.ixenit.membersort.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import java.util.List;
+
+import org.eclipse.jdt.core.dom.BodyDeclaration;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.jdt.core.dom.TypeDeclaration;
+import org.junit.Test;
+
+/**
+ * Tests of {@link RuleSet}.
+ *
+ * @author Benjámin Hajnal <benjamin.hajnal@ixenit.com>
+ *
+ */
+public class RuleSetTest {
+
+	@Test
+	public void testFingerprintDependsOnTheOrderOnly() {
+		RuleSet ruleSet = RuleSet.compile(new String[] { "public method", "private variable" }, true);
+
+		// The rules are compiled again when the preferences change
+		assertEquals(
+			ruleSet.getFingerprint(),
+			RuleSet.compile(new String[] { "public method", "private variable" }, true).getFingerprint());
+
+		assertNotEquals(
+			ruleSet.getFingerprint(),
+			RuleSet.compile(new String[] { "private variable", "public method" }, true).getFingerprint());
+		assertNotEquals(
+			ruleSet.getFingerprint(),
+			RuleSet.compile(new String[] { "public method", "private variable" }, false).getFingerprint());
+	}
+
+	@Test
+	public void testMembersMatchingNoRuleGetTheFallbackRank() {
+		RuleSet ruleSet = RuleSet.compile(new String[] { "public method", "invalid rule" }, true);
+
+		List<BodyDeclaration> members = _parseMembers("class A { public void a() {} void b() {} }");
+
+		assertEquals(2, ruleSet.getFallbackRank());
+		assertEquals(0, ruleSet.getRank(members.get(0)));
+		assertEquals(2, ruleSet.getRank(members.get(1)));
+	}
+
+	@Test
+	public void testModifiersMatchExactly() {
+		RuleSet ruleSet = RuleSet.compile(new String[] { "private static variable", "private variable" }, true);
+
+		List<BodyDeclaration> members = _parseMembers(
+			"class A { private int a; private static int b; private static final int c = 0; }");
+
+		assertEquals(1, ruleSet.getRank(members.get(0)));
+		assertEquals(0, ruleSet.getRank(members.get(1)));
+		assertEquals(ruleSet.getFallbackRank(), ruleSet.getRank(members.get(2)));
+	}
+
+	@Test
+	public void testRulesWithoutVisibilityMatchPackageMembers() {
+		RuleSet ruleSet = RuleSet.compile(new String[] { "method" }, true);
+
+		List<BodyDeclaration> members = _parseMembers("class A { void a() {} public void b() {} }");
+
+		assertEquals(0, ruleSet.getRank(members.get(0)));
+		assertEquals(ruleSet.getFallbackRank(), ruleSet.getRank(members.get(1)));
+	}
+
+	@Test
+	public void testTheFirstMatchingRuleGivesTheRank() {
+		RuleSet ruleSet = RuleSet.compile(RuleSet.DEFAULT_ORDER, true);
+
+		List<BodyDeclaration> members = _parseMembers(
+			"class A { public static final int A = 0; public A() {} private void b() {} static {} enum E {} }");
+
+		int[] ranks = new int[members.size()];
+
+		for (int i = 0; i < ranks.length; i++) {
+			ranks[i] = ruleSet.getRank(members.get(i));
+		}
+
+		String[] expected = { "public static final variable", "public constructor", "private method", "static init",
+			"package enum" };
+
+		for (int i = 0; i < ranks.length; i++) {
+			assertEquals(expected[i], RuleSet.DEFAULT_ORDER[ranks[i]]);
+		}
+	}
+
+	/**
+	 * Parses the members of the first type of the given source.
+	 */
+	@SuppressWarnings("unchecked")
+	private static List<BodyDeclaration> _parseMembers(String source) {
+		CompilationUnit unit = new MemberSorter(RuleSet.compile(RuleSet.DEFAULT_ORDER, true)).parse(source);
+
+		return ((TypeDeclaration)unit.types().get(0)).bodyDeclarations();
+	}
+
+}
@@ -0,0 +1,121 @@
+/*******************************************************************************
+ * Copyright 2015 Ixenit
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *******************************************************************************/
+package com.ixenit.membersort.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.eclipse.jdt.core.dom.BodyDeclaration;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.jdt.core.dom.TypeDeclaration;
+import org.junit.Test;
+
+/**
+ * Tests of {@link Rule}.
+ *
+ * @author Benjámin Hajnal <benjamin.hajnal@ixenit.com>
+ *
+ */
+public class RuleTest {
+
+	@Test
+	public void testAnnotationsAndNamePatternAreConditions() {
+		Rule annotated = Rule.parse("@Test @org.junit.Ignore method");
+		Rule named = Rule.parse("public method /^(get|is)[A-Z]/");
+
+		assertEquals(Arrays.asList("Test", "org.junit.Ignore"), annotated.getAnnotations());
+		assertEquals("^(get|is)[A-Z]", named.getNamePattern());
+
+		List<BodyDeclaration> members = _parseMembers(
+			"class A { @org.junit.Test @Ignore void a() {} @Test void b() {} public int getA() {} "
+				+ "public int get() {} }");
+
+		assertTrue(annotated.matchesConditions(members.get(0)));
+		assertFalse(annotated.matchesConditions(members.get(1)));
+		assertTrue(named.matchesConditions(members.get(2)));
+		assertFalse(named.matchesConditions(members.get(3)));
+	}
+
+	@Test
+	public void testInvalidRulesAreNull() {
+		String[] rules = { "", "public", "public method variable", "public static", "protected foo method", "@ method",
+			"method /(/", "method /a", "/a/" };
+
+		for (String rule : rules) {
+			assertNull(rule, Rule.parse(rule));
+		}
+	}
+
+	@Test
+	public void testModifiersAreInCanonicalOrder() {
+		Rule rule = Rule.parse("  final   static private variable ");
+
+		assertEquals(Arrays.asList("static", "final"), rule.getModifiers());
+		assertEquals("private static final variable", rule.toString());
+		assertFalse(rule.isAnyModifiers());
+	}
+
+	@Test
+	public void testNamePatternMayContainTheWordSeparator() {
+		Rule rule = Rule.parse("method /a b/");
+
+		assertEquals("a b", rule.getNamePattern());
+		assertEquals("method", rule.getType());
+	}
+
+	@Test
+	public void testPatternsMatchAnyVisibility() {
+		assertNull(Rule.parse("* static final variable").getVisibility());
+		assertNull(Rule.parse("@Test method").getVisibility());
+		assertNull(Rule.parse("method /^get/").getVisibility());
+
+		assertTrue(Rule.parse("* static final variable").isAnyModifiers());
+	}
+
+	@Test
+	public void testRulesWithoutVisibilityArePackageRules() {
+		assertEquals("package", Rule.parse("static method").getVisibility());
+		assertEquals("package static method", Rule.parse("static method").toString());
+	}
+
+	@Test
+	public void testToStringParsesToTheSameRule() {
+		String[] rules = { "public static final variable", "* static variable", "protected * @Deprecated method",
+			"@Test @Before method /^test/", "init", "public enum", "private method /a b/" };
+
+		for (String rule : rules) {
+			String canonical = Rule.parse(rule).toString();
+
+			assertEquals(rule, canonical, Rule.parse(canonical).toString());
+		}
+	}
+
+	/**
+	 * Parses the members of the first type of the given source.
+	 */
+	@SuppressWarnings("unchecked")
+	private static List<BodyDeclaration> _parseMembers(String source) {
+		CompilationUnit unit = new MemberSorter(RuleSet.compile(RuleSet.DEFAULT_ORDER, true)).parse(source);
+
+		return ((TypeDeclaration)unit.types().get(0)).bodyDeclarations();
+	}
+
+}
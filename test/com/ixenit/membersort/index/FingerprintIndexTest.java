@@ -0,0 +1,157 @@
+/*******************************************************************************
+ * Copyright 2015 Ixenit
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *******************************************************************************/
+package com.ixenit.membersort.index;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests of {@link FingerprintIndex}.
+ *
+ * @author Benjámin Hajnal <benjamin.hajnal@ixenit.com>
+ *
+ */
+public class FingerprintIndexTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testBrokenFileGivesEmptyIndex() throws IOException {
+		File file = folder.newFile("sorted.idx");
+
+		Files.write(file.toPath(), "not an index".getBytes(StandardCharsets.UTF_8));
+
+		FingerprintIndex index = FingerprintIndex.open(file);
+
+		assertEquals(0, index.size());
+
+		index.put("/p/A.java", 1);
+
+		assertTrue(index.contains("/p/A.java", 1));
+
+		index.close();
+	}
+
+	@Test
+	public void testClearedIndexIsCompactedWhenOpened() throws IOException {
+		File file = new File(folder.getRoot(), "sorted.idx");
+
+		FingerprintIndex index = FingerprintIndex.open(file);
+
+		long initialLength = file.length();
+
+		_putAll(index, 10000);
+
+		index.clear();
+		index.put("/p/A.java", 1);
+		index.close();
+
+		// The mapped file is never truncated
+		assertTrue(file.length() > initialLength);
+
+		index = FingerprintIndex.open(file);
+
+		assertEquals(initialLength, file.length());
+		assertEquals(1, index.size());
+		assertTrue(index.contains("/p/A.java", 1));
+		assertFalse(index.contains("/p/File0.java", 0));
+
+		index.close();
+	}
+
+	@Test
+	public void testEntriesSurviveGrowingAndReopening() throws IOException {
+		File file = new File(folder.getRoot(), "sorted.idx");
+
+		FingerprintIndex index = FingerprintIndex.open(file);
+
+		_putAll(index, 10000);
+
+		index.close();
+
+		index = FingerprintIndex.open(file);
+
+		assertEquals(10000, index.size());
+
+		for (int i = 0; i < 10000; i++) {
+			assertTrue(index.contains(_path(i), i));
+		}
+
+		index.close();
+	}
+
+	@Test
+	public void testFingerprintHasToMatch() throws IOException {
+		FingerprintIndex index = FingerprintIndex.open(new File(folder.getRoot(), "sorted.idx"));
+
+		index.put("/p/A.java", 42);
+
+		assertTrue(index.contains("/p/A.java", 42));
+		assertFalse(index.contains("/p/A.java", 43));
+		assertFalse(index.contains("/p/B.java", 42));
+
+		index.put("/p/A.java", 43);
+
+		assertEquals(1, index.size());
+		assertTrue(index.contains("/p/A.java", 43));
+
+		index.close();
+	}
+
+	@Test
+	public void testRemovedEntriesAreNotFound() throws IOException {
+		FingerprintIndex index = FingerprintIndex.open(new File(folder.getRoot(), "sorted.idx"));
+
+		_putAll(index, 3000);
+
+		// Removing every other entry shifts the probe sequences of the rest
+		for (int i = 0; i < 3000; i += 2) {
+			index.remove(_path(i));
+		}
+
+		index.remove("/p/Missing.java");
+
+		assertEquals(1500, index.size());
+
+		for (int i = 0; i < 3000; i++) {
+			assertEquals((i % 2) != 0, index.contains(_path(i), i));
+		}
+
+		index.close();
+	}
+
+	private static String _path(int i) {
+		return "/p/File" + i + ".java";
+	}
+
+	private static void _putAll(FingerprintIndex index, int count) {
+		for (int i = 0; i < count; i++) {
+			index.put(_path(i), i);
+		}
+	}
+
+}
@@ -0,0 +1,149 @@
+/*******************************************************************************
+ * Copyright 2015 Ixenit
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *******************************************************************************/
+package com.ixenit.membersort.index;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests of {@link RunJournal}.
+ *
+ * @author Benjámin Hajnal <benjamin.hajnal@ixenit.com>
+ *
+ */
+public class RunJournalTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testConcurrentRunGoesWithoutJournal() throws IOException {
+		File file = folder.newFile("run");
+
+		RunJournal journal = RunJournal.open(file, 1);
+
+		assertNull(RunJournal.open(file, 1));
+
+		journal.append("/p/A.java", 1);
+		journal.close();
+
+		journal = RunJournal.open(file, 1);
+
+		assertTrue(journal.contains("/p/A.java", 1));
+
+		journal.close();
+	}
+
+	@Test
+	public void testDeletedJournalIsStartedOver() throws IOException {
+		File file = new File(folder.getRoot(), "journal/run");
+
+		RunJournal journal = RunJournal.open(file, 1);
+
+		journal.append("/p/A.java", 1);
+		journal.delete();
+
+		assertFalse(file.exists());
+
+		journal = RunJournal.open(file, 1);
+
+		assertFalse(journal.contains("/p/A.java", 1));
+
+		journal.close();
+	}
+
+	@Test
+	public void testJournalOfOtherRulesIsStartedOver() throws IOException {
+		File file = folder.newFile("run");
+
+		RunJournal journal = RunJournal.open(file, 1);
+
+		journal.append("/p/A.java", 1);
+		journal.close();
+
+		journal = RunJournal.open(file, 2);
+
+		assertFalse(journal.contains("/p/A.java", 1));
+
+		journal.close();
+
+		journal = RunJournal.open(file, 1);
+
+		assertFalse(journal.contains("/p/A.java", 1));
+
+		journal.close();
+	}
+
+	@Test
+	public void testLineCutShortByCrashIsIgnored() throws IOException {
+		File file = folder.newFile("run");
+
+		RunJournal journal = RunJournal.open(file, 1);
+
+		journal.append("/p/A.java", 1);
+		journal.close();
+
+		// A crash while writing the stamp of the next line
+		Files.write(file.toPath(), "12".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+		journal = RunJournal.open(file, 1);
+
+		assertTrue(journal.contains("/p/A.java", 1));
+
+		journal.append("/p/B.java", 2);
+		journal.close();
+
+		// The cut line does not swallow the next one
+		journal = RunJournal.open(file, 1);
+
+		assertTrue(journal.contains("/p/A.java", 1));
+		assertTrue(journal.contains("/p/B.java", 2));
+
+		journal.close();
+	}
+
+	@Test
+	public void testReopenedJournalSkipsUnchangedFiles() throws IOException {
+		File file = folder.newFile("run");
+
+		RunJournal journal = RunJournal.open(file, 1);
+
+		journal.append("/p/A.java", 1);
+		journal.append("/p/B.java", 2);
+		journal.close();
+
+		journal = RunJournal.open(file, 1);
+
+		assertTrue(journal.contains("/p/A.java", 1));
+		assertTrue(journal.contains("/p/B.java", 2));
+		assertFalse(journal.contains("/p/A.java", 2));
+		assertFalse(journal.contains("/p/C.java", 1));
+
+		journal.close();
+	}
+
+}